@@ -0,0 +1,57 @@
+package net.intelie.challenges;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+final class DirectMemory {
+
+  // Releases the memory of a direct (or mapped) ByteBuffer right away instead of waiting for the
+  // GarbageCollector to collect the buffer object, which may take long when the heap is small and
+  // quiet, exactly the case of the off-heap stores. Java 9+ exposes Unsafe.invokeCleaner, Java 8
+  // has the cleaner of the buffer itself; both are reached by reflection so the code compiles for
+  // Java 8. If neither is available the buffer is left to the GarbageCollector.
+  // The caller must guarantee the buffer is never read again, reading freed memory crashes the VM.
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private DirectMemory() {}
+
+  static void free(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      return;
+    }
+
+    try {
+      if (INVOKE_CLEANER != null) {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      } else {
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // the GarbageCollector releases the memory when the buffer is collected
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package net.intelie.challenges;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class DirectTimestampChunk extends TimestampChunk {
+
+  // The chunk of EventStoreOffHeap, CAPACITY longs in a direct ByteBuffer. The heap only holds the
+  // two small buffer objects, the 32KB of timestamps live outside of it and are freed by release.
+  // The native byte order avoids swapping the bytes on every access.
+
+  static final int BYTES = CAPACITY * Long.BYTES;
+
+  private final ByteBuffer buffer;
+  private final LongBuffer values;
+  private final AtomicLong allocatedBytes;
+
+  /**
+   * @param allocatedBytes the counter of off-heap bytes of the store, updated on allocation and
+   *                       release.
+   */
+  DirectTimestampChunk(AtomicLong allocatedBytes) {
+    super(CAPACITY);
+    this.buffer = ByteBuffer.allocateDirect(BYTES).order(ByteOrder.nativeOrder());
+    this.values = buffer.asLongBuffer();
+    this.allocatedBytes = allocatedBytes;
+    allocatedBytes.addAndGet(BYTES);
+  }
+
+  @Override
+  long get(int index) {
+    return values.get(index);
+  }
+
+  @Override
+  void set(int index, long timestamp) {
+    values.put(index, timestamp);
+  }
+
+  @Override
+  void move(int from, int to, int length) {
+    move(values, from, to, length);
+  }
+
+  static void move(LongBuffer values, int from, int to, int length) {
+    if (from < to) {
+      for (int i = length - 1; i >= 0; i--) {
+        values.put(to + i, values.get(from + i));
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        values.put(to + i, values.get(from + i));
+      }
+    }
+  }
+
+  @Override
+  void release() {
+    DirectMemory.free(buffer);
+    allocatedBytes.addAndGet(-BYTES);
+  }
+}
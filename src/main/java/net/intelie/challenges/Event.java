@@ -1,5 +1,7 @@
 package net.intelie.challenges;
 
+import java.util.Objects;
+
 /**
  * This is just an event stub, feel free to expand it if needed.
  */
@@ -19,4 +21,29 @@ public class Event {
     public long timestamp() {
         return timestamp;
     }
+
+    // Two events are equal when they have the same type and timestamp. Stores that keep only the
+    // timestamps (see EventStoreColumnar) rebuild the Event when it is read, so the identity of
+    // the inserted object is not preserved by every store.
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Event)) {
+            return false;
+        }
+        Event event = (Event) other;
+        return timestamp == event.timestamp && Objects.equals(type, event.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(type) + Long.hashCode(timestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "Event{type='" + type + "', timestamp=" + timestamp + "}";
+    }
 }
@@ -0,0 +1,43 @@
+package net.intelie.challenges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class EventBatch {
+
+  // Helpers of the insertAll implementations: a batch is split by type with one hash lookup per
+  // Event, then each type is sorted once, so the structure of the type receives its Event in
+  // timestamp order, the cheapest order for all of them (appends at the end of a column, inserts
+  // next to the previous node of a skip list).
+
+  private EventBatch() {}
+
+  /**
+   * The events grouped by type, each group sorted by timestamp and, for the same timestamp, in
+   * the order of the batch.
+   */
+  static Map<String, List<Event>> sortedByType(Collection<? extends Event> events) {
+    Map<String, List<Event>> byType = new HashMap<>();
+    for (Event event : events) {
+      byType.computeIfAbsent(event.type(), type -> new ArrayList<>()).add(event);
+    }
+
+    for (List<Event> group : byType.values()) {
+      // List.sort is stable
+      group.sort(Comparator.comparingLong(Event::timestamp));
+    }
+    return byType;
+  }
+
+  static long[] timestamps(List<Event> events) {
+    long[] timestamps = new long[events.size()];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = events.get(i).timestamp();
+    }
+    return timestamps;
+  }
+}
@@ -0,0 +1,56 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.TimeUnit;
+
+public final class EventCompactor implements AutoCloseable {
+
+  // Compacts an EventStoreMemory periodically, from a daemon thread of its own, as the
+  // RetentionEnforcer drops from it: each pass seals the partitions of every type whose Event are
+  // all older than the age (see EventStoreMemory.compactBefore). A pass encodes the blocks off the
+  // insert path, the inserts and queries run along with it, only the removals from the partition
+  // being sealed wait for it. A partition already sealed is only sealed again when Event arrived
+  // in it since, so a pass over a store without late arrivals costs a walk of its partitions.
+  // The passes are scheduled by a PeriodicPass: a slow pass never overlaps the next one and a pass
+  // that throws is kept for lastFailure, the next ones still run.
+
+  private final PeriodicPass passes;
+
+  /**
+   * Starts compacting the store, the first pass runs right away.
+   *
+   * @param age how old, in the unit, the Event of a partition must all be for it to be sealed.
+   * @param period the delay between the end of a pass and the start of the next one.
+   * @throws IllegalArgumentException if an argument is null, the age is negative or the period is
+   *         not positive.
+   */
+  public EventCompactor(EventStoreMemory store, long age, long period, TimeUnit unit) {
+    if (store == null || unit == null || age < 0 || period <= 0)
+      throw new IllegalArgumentException();
+
+    long ageMillis = unit.toMillis(age);
+    this.passes = new PeriodicPass("event-store-compaction",
+        () -> store.compactBefore(System.currentTimeMillis() - ageMillis), period, unit);
+  }
+
+  /**
+   * Number of Event sealed by the passes so far.
+   */
+  public long sealedEvents() {
+    return passes.handled();
+  }
+
+  /**
+   * The exception thrown by the last pass that failed, null if none failed.
+   */
+  public RuntimeException lastFailure() {
+    return passes.lastFailure();
+  }
+
+  /**
+   * Stops the passes, a pass already running finishes on its own.
+   */
+  @Override
+  public void close() {
+    passes.close();
+  }
+}
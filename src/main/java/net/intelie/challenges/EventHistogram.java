@@ -0,0 +1,44 @@
+package net.intelie.challenges;
+
+import java.util.function.LongBinaryOperator;
+import java.util.stream.IntStream;
+
+final class EventHistogram {
+
+  // The buckets of EventStore.histogram: the window is cut in buckets of the same width, the
+  // smallest one that covers it, so the last buckets may end after endTime (and even start after
+  // it when the window is narrower than the number of buckets, then they stay at zero). Each
+  // bucket is answered by the count of the store, the implementations only decide whether the
+  // buckets are counted in parallel, each one writing its own position of the result.
+
+  private EventHistogram() {}
+
+  /**
+   * Width of each bucket, at least 1.
+   */
+  static long bucketWidth(long startTime, long endTime, int buckets) {
+    // the ceil of (endTime - startTime + 1) / buckets, without overflowing on Long.MAX_VALUE
+    return (endTime - startTime) / buckets + 1;
+  }
+
+  static long[] compute(long startTime, long endTime, int buckets, LongBinaryOperator count,
+      boolean parallel) {
+    long width = bucketWidth(startTime, endTime, buckets);
+    long[] result = new long[buckets];
+
+    IntStream indexes = IntStream.range(0, buckets);
+    if (parallel) {
+      indexes = indexes.parallel();
+    }
+    indexes.forEach(index -> {
+      long offset = index * width;
+      if (offset > endTime - startTime) {
+        return;
+      }
+      long from = startTime + offset;
+      long to = endTime - from < width ? endTime : from + (width - 1);
+      result[index] = count.applyAsLong(from, to);
+    });
+    return result;
+  }
+}
@@ -0,0 +1,243 @@
+package net.intelie.challenges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+public final class EventIngestor implements AutoCloseable {
+
+  // An asynchronous front end of an EventStore for bursts of many producers. The types are spread
+  // over shards by their hash; each shard is an EventRingBuffer, where the producers publish with
+  // one CAS and no lock, drained by an appender thread of its own that inserts the Event in batches
+  // with insertAll. So the producers of a burst only meet on the tail of a ring buffer, the store
+  // sees a few writers with large sorted batches instead of every producer with one Event, and the
+  // Event of a type keep the order of each producer, a type always goes to the same appender.
+  // publish returns as soon as the Event is in the buffer, before the store has it: flush waits
+  // until every Event published before it is visible to the queries of the store (read-your-
+  // writes). A full buffer makes publish wait for its appender, tryPublish refuses instead.
+  // An appender parks when its buffer is empty and the producers unpark it, it also wakes up on its
+  // own every millisecond, so a lost wake-up only costs that delay.
+  // Each shard counts the producers inside an offer: close marks the ingestor closed, then waits
+  // for the offers in progress before it flushes, so an offer either sees the ingestor closed and
+  // fails, or ends before the flush takes its targets and is inserted by it, never left behind in
+  // the buffer of a stopped appender.
+  // An exception of the store is kept, the batch counted as applied so flush does not wait for it
+  // forever, and thrown again by the next publish and flush.
+
+  private static final int BATCH_SIZE = 1024;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long WAIT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final EventStore store;
+  private final Shard[] shards;
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+  private volatile boolean closed;
+  private volatile boolean stopped;
+
+  /**
+   * Starts one appender thread for each shard.
+   *
+   * @param shards   the number of ring buffers and appender threads.
+   * @param capacity the capacity of each ring buffer, rounded up to a power of two.
+   * @throws IllegalArgumentException if the store is null, shards or capacity is not positive.
+   */
+  public EventIngestor(EventStore store, int shards, int capacity) {
+    if (store == null || shards <= 0 || capacity <= 0)
+      throw new IllegalArgumentException();
+
+    this.store = store;
+    this.shards = new Shard[shards];
+    for (int i = 0; i < shards; i++) {
+      this.shards[i] = new Shard(capacity);
+    }
+    for (int i = 0; i < shards; i++) {
+      Thread thread = new Thread(this.shards[i], "event-ingestor-" + i);
+      thread.setDaemon(true);
+      this.shards[i].appender = thread;
+      thread.start();
+    }
+  }
+
+  /**
+   * Publishes the Event to be inserted, waiting while the buffer of its shard is full.
+   *
+   * @throws IllegalArgumentException if the Event is null.
+   * @throws IllegalStateException if the ingestor is closed, or the store failed an insert.
+   */
+  public void publish(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    Shard shard = shardOf(event);
+    while (!shard.offer(event)) {
+      checkOpen();
+      LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+    }
+  }
+
+  /**
+   * Publishes the Event to be inserted if the buffer of its shard has room.
+   *
+   * @return false if the buffer is full.
+   * @throws IllegalArgumentException if the Event is null.
+   * @throws IllegalStateException if the ingestor is closed, or the store failed an insert.
+   */
+  public boolean tryPublish(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    return shardOf(event).offer(event);
+  }
+
+  /**
+   * Waits until every Event published before the call is visible in the store.
+   *
+   * @throws InterruptedException if the thread is interrupted while it waits.
+   * @throws IllegalStateException if the store failed an insert.
+   */
+  public void flush() throws InterruptedException {
+    flush(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Waits until every Event published before the call is visible in the store, or the time is
+   * over.
+   *
+   * @return false if the time was over first.
+   * @throws InterruptedException if the thread is interrupted while it waits.
+   * @throws IllegalStateException if the store failed an insert.
+   */
+  public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    long[] targets = new long[shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      targets[i] = shards[i].buffer.offered();
+    }
+
+    for (int i = 0; i < shards.length; i++) {
+      Shard shard = shards[i];
+      while (shard.applied.get() < targets[i]) {
+        checkFailure();
+        if (System.nanoTime() - deadline >= 0) {
+          return false;
+        }
+        LockSupport.unpark(shard.appender);
+        LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    }
+    checkFailure();
+    return true;
+  }
+
+  /**
+   * Stops accepting Event, waits until the ones published are in the store and stops the
+   * appenders.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      for (Shard shard : shards) {
+        while (shard.publishers.get() != 0) {
+          Thread.yield();
+        }
+      }
+      flush();
+    } finally {
+      // not an interrupt, which could reach the store in the middle of an insert
+      stopped = true;
+      for (Shard shard : shards) {
+        LockSupport.unpark(shard.appender);
+      }
+      for (Shard shard : shards) {
+        shard.appender.join();
+      }
+    }
+  }
+
+  private Shard shardOf(Event event) {
+    String type = event.type();
+    int hash = type == null ? 0 : type.hashCode();
+    return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+  }
+
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("the ingestor is closed");
+    checkFailure();
+  }
+
+  private void checkFailure() {
+    RuntimeException exception = failure.get();
+    if (exception != null)
+      throw new IllegalStateException("the store failed an insert", exception);
+  }
+
+  private final class Shard implements Runnable {
+    final EventRingBuffer buffer;
+    // the Event polled from the buffer whose insert into the store ended
+    final AtomicLong applied = new AtomicLong();
+    // the producers inside offer, see close
+    final AtomicInteger publishers = new AtomicInteger();
+    volatile Thread appender;
+    volatile boolean idle;
+
+    Shard(int capacity) {
+      this.buffer = new EventRingBuffer(capacity);
+    }
+
+    boolean offer(Event event) {
+      publishers.incrementAndGet();
+      try {
+        checkOpen();
+        if (!buffer.offer(event)) {
+          return false;
+        }
+      } finally {
+        publishers.decrementAndGet();
+      }
+      if (idle) {
+        LockSupport.unpark(appender);
+      }
+      return true;
+    }
+
+    @Override
+    public void run() {
+      List<Event> batch = new ArrayList<>(BATCH_SIZE);
+      while (true) {
+        Event event;
+        while (batch.size() < BATCH_SIZE && (event = buffer.poll()) != null) {
+          batch.add(event);
+        }
+
+        if (!batch.isEmpty()) {
+          try {
+            store.insertAll(batch);
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          }
+          applied.addAndGet(batch.size());
+          batch.clear();
+        } else if (stopped) {
+          return;
+        } else {
+          idle = true;
+          // an offer made before idle was seen would not unpark the appender
+          if (buffer.size() == 0) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          idle = false;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package net.intelie.challenges;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+final class EventIteratorAdapter implements Iterator<Event> {
+
+  // An EventIterator seen as a java.util.Iterator, for the default EventStore.stream: hasNext
+  // calls moveNext once and keeps the answer until next consumes it.
+
+  private final EventIterator iterator;
+  private boolean moved;
+  private boolean hasNext;
+
+  EventIteratorAdapter(EventIterator iterator) {
+    this.iterator = iterator;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (!moved) {
+      hasNext = iterator.moveNext();
+      moved = true;
+    }
+    return hasNext;
+  }
+
+  @Override
+  public Event next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    moved = false;
+    return iterator.current();
+  }
+}
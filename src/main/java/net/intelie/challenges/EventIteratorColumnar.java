@@ -0,0 +1,58 @@
+package net.intelie.challenges;
+
+public class EventIteratorColumnar implements EventIterator {
+
+  // Iterator over a TimestampColumn. The column keeps only the timestamps, so the Event is built
+  // the first time current is called for a position and the iterations that never call current
+  // (counting, removing) do not allocate at all. The type is the instance kept by the store, so
+  // all the Event of a type share the same String.
+  // The column cursor is weakly consistent: it never returns a removed timestamp, it never goes
+  // back to timestamps inserted behind it and it sees the ones inserted ahead of it.
+
+  private final String type;
+  private final TimestampColumn.Cursor cursor;
+  private boolean positioned;
+  private boolean currentRemoved;
+  private Event current;
+
+  EventIteratorColumnar(String type, TimestampColumn.Cursor cursor) {
+    this.type = type;
+    this.cursor = cursor;
+  }
+
+  @Override
+  public synchronized boolean moveNext() {
+    current = null;
+    currentRemoved = false;
+    positioned = cursor != null && cursor.next();
+    return positioned;
+  }
+
+  @Override
+  public synchronized Event current() {
+    if (!positioned)
+      throw new IllegalStateException();
+
+    if (current == null) {
+      current = new Event(type, cursor.timestamp());
+    }
+    return current;
+  }
+
+  @Override
+  public synchronized void remove() {
+    if (!positioned)
+      throw new IllegalStateException();
+
+    if (!currentRemoved) {
+      cursor.remove();
+      currentRemoved = true;
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    // This method has no implementation due to the
+    // fact that there is no resource to be closed
+  }
+}
@@ -0,0 +1,61 @@
+package net.intelie.challenges;
+
+import java.util.Iterator;
+
+public class EventIteratorConfined implements EventIterator {
+
+  // The iterator of EventStore.queryConfined: the same cursor of the store as EventIteratorMemory,
+  // but without a monitor, the fields are plain and each moveNext is only the step of the cursor.
+  // It belongs to a single thread at a time: the thread that got it from queryConfined, or the one
+  // it was handed to through a happens-before edge (an ExecutorService, a BlockingQueue); two
+  // threads calling it at the same time may see a torn state, there is no check to catch them.
+  // The cursor keeps the guarantees of the store: weakly consistent, in timestamp order, each
+  // Event at most once, and remove deletes the current Event from the store, once.
+
+  private final Iterator<Event> cursor;
+  private Event current;
+  private boolean currentRemoved;
+
+  EventIteratorConfined(Iterator<Event> cursor) {
+    this.cursor = cursor;
+  }
+
+  @Override
+  public boolean moveNext() {
+    currentRemoved = false;
+    if (cursor.hasNext()) {
+      current = cursor.next();
+      return true;
+    }
+
+    current = null;
+    return false;
+  }
+
+  @Override
+  public Event current() {
+    if (current == null)
+      throw new IllegalStateException();
+
+    return current;
+  }
+
+  @Override
+  public void remove() {
+    if (current == null)
+      throw new IllegalStateException();
+
+    if (!currentRemoved) {
+      cursor.remove();
+      currentRemoved = true;
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    // The cursors hold no resource, only a metered one records its query when closed
+    if (cursor instanceof AutoCloseable) {
+      ((AutoCloseable) cursor).close();
+    }
+  }
+}
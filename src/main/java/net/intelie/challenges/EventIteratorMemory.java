@@ -1,89 +1,73 @@
 package net.intelie.challenges;
 
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class EventIteratorMemory implements EventIterator {
 
-  // The ArrayList is the satisfaction structure for the use case,
-  // be case the operation of get, "next" have O(1) of complexity using the index to helper.
-  // The remove operation have the O(n) cost the ArrayList is created using the
-  // Collections.synchronizedList to get a Thread-safe structure
-
-  private List<Event> listEvents;
-  private AtomicInteger index;
-  private AtomicBoolean moveNextToBeCall;
-  private AtomicBoolean withoutElements;
+  // The iterator is a cursor over the structure of the store, it does not copy the result of the
+  // query: each moveNext walks one step on the underlying Iterator, so an open iterator uses
+  // constant memory and the first Event is available as soon as the query returns.
+  // When it walks a timeline of EventStoreMemory the cursor is weakly consistent, as the
+  // iterators of java.util.concurrent: it never throws ConcurrentModificationException, it returns
+  // each Event at most once and in timestamp order, it never goes back to Event inserted behind
+  // the cursor, the Event inserted ahead of the cursor after its creation may or may not be seen,
+  // and the Event removed ahead of it (by removeRange, another iterator or the retention) are not.
+  // remove deletes the current Event through the cursor, so it reaches the structure of the store:
+  // on a timeline it is a removal from the skip list, O(log n), without shifting any array. The
+  // iterator keeps pointing to the removed Event until the next moveNext, and removing it again
+  // has no effect.
+
+  private final Iterator<Event> cursor;
+  private Event current;
+  private boolean currentRemoved;
 
   public EventIteratorMemory(List<Event> listEvents) {
-    this.listEvents = listEvents;
-    this.index = new AtomicInteger(-1);
-    this.moveNextToBeCall = new AtomicBoolean(false);
-    this.withoutElements = new AtomicBoolean(listEvents.isEmpty());
+    this(listEvents.iterator());
+  }
+
+  EventIteratorMemory(Iterator<Event> cursor) {
+    this.cursor = cursor;
   }
 
   @Override
   public synchronized boolean moveNext() {
-    this.moveNextToBeCall.set(true);
-    if (hasNext()) {
-      index.incrementAndGet();
+    currentRemoved = false;
+    if (cursor.hasNext()) {
+      current = cursor.next();
       return true;
     }
 
+    current = null;
     return false;
   }
 
-  /**
-   * Helper to verifies if is possible to move to the next element of iterator
-   * 
-   * @return true if is possible to move, false otherwise
-   */
-  private boolean hasNext() {
-    // First make sure the list has element, if not, can not move the pointer
-    if (listEvents.isEmpty()) {
-      return false;
-    }
-
-    // then check if list have a next element, if not, can not move the pointer
-    if ((index.get() + 1) >= listEvents.size())
-      return false;
-
-
-    // if it passes both can move the next element
-    return true;
-  }
-
   @Override
   public synchronized Event current() {
-    // First check if moveNext was be call and if has next element
-    if (!this.moveNextToBeCall.get() || this.withoutElements.get()) {
+    // The current is null if moveNext was never called or if its last result was false
+    if (current == null) {
       throw new IllegalStateException();
     }
 
-    return listEvents.get(index.get());
+    return current;
   }
 
   @Override
   public synchronized void remove() {
-    // First check if moveNext was be call and if not has next element
-    if (!this.moveNextToBeCall.get() || this.withoutElements.get())
+    if (current == null)
       throw new IllegalStateException();
 
-    listEvents.remove(index.get());
-
-    // adjusting the pointer
-    if (!this.listEvents.isEmpty()) {
-      moveNext();
-    } else {
-      this.withoutElements.set(true);
-      index.set(listEvents.size() - 1);
+    if (!currentRemoved) {
+      cursor.remove();
+      currentRemoved = true;
     }
   }
 
   @Override
   public void close() throws Exception {
-    // This method has no implementation due to the
-    // fact that there is no resource to be closed
+    // The cursors hold no resource, only a metered one records its query when closed
+    if (cursor instanceof AutoCloseable) {
+      ((AutoCloseable) cursor).close();
+    }
   }
 }
@@ -0,0 +1,112 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class EventRingBuffer {
+
+  // A bounded lock-free queue of Event for many producers and consumers, the array queue of Dmitry
+  // Vyukov: each slot has a sequence that tells whether it is free for the producer of a given
+  // position or full for its consumer, so a producer claims a position with one CAS on the tail,
+  // writes the Event in the slot and publishes it by moving the sequence of the slot, and a
+  // consumer does the same on the head. No lock and no allocation: offer on a full buffer fails at
+  // once, which is what keeps a slow consumer from ever stalling a producer.
+  // The slots are a plain array, their writes are published by the store of the sequence and seen
+  // after the acquire of its read. The offer publishes with a volatile store, not a lazySet: a
+  // consumer that parks (see Subscription.poll) publishes itself and polls again, and the producer
+  // reads it after the offer, which needs the full fence of the volatile store to not be reordered
+  // before it. The poll frees its slot with a lazySet, nobody waits on a free slot.
+  // The cost Big-O of operations is:
+  // offer, poll: O(1), plus a retry for each other producer, or consumer, that won the same CAS;
+
+  private final int mask;
+  private final Event[] slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * @param capacity rounded up to a power of two.
+   * @throws IllegalArgumentException if the capacity is not positive or above 2^30.
+   */
+  EventRingBuffer(int capacity) {
+    if (capacity <= 0 || capacity > 1 << 30)
+      throw new IllegalArgumentException();
+
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    mask = size - 1;
+    slots = new Event[size];
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * @return false if the buffer is full.
+   */
+  boolean offer(Event event) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots[index] = event;
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * @return the oldest Event, null if the buffer is empty.
+   */
+  Event poll() {
+    long position = head.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          Event event = slots[index];
+          slots[index] = null;
+          sequences.lazySet(index, position + mask + 1);
+          return event;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Number of positions claimed by offers so far, each one is taken by a poll once its offer ends.
+   */
+  long offered() {
+    return tail.get();
+  }
+
+  /**
+   * Number of Event in the buffer, exact when there is no concurrent offer or poll.
+   */
+  int size() {
+    return (int) Math.max(0, Math.min(slots.length, tail.get() - head.get()));
+  }
+}
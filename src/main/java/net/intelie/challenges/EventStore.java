@@ -1,5 +1,18 @@
 package net.intelie.challenges;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * An abstraction of an event store.
  * <p>
@@ -15,6 +28,55 @@ public interface EventStore {
      */
     void insert(Event event);
 
+    /**
+     * Resolves a type to its handle in this store, creating it the
+     * first time, so the producers of a type can insert its events
+     * with {@link #insert(TypeHandle, long)} instead of building a
+     * String and an Event for each one. The handle stays valid after
+     * {@link #removeAll(String)} of its type.
+     *
+     * @param type the type of the events.
+     * @return the handle of the type, the same one for every call.
+     * @throws IllegalArgumentException if the type is null or blank.
+     */
+    TypeHandle handle(String type);
+
+    /**
+     * Stores an event of a type resolved by {@link #handle(String)},
+     * the event holds the type instance of the handle. The default
+     * implementation checks that {@link #handle(String)} answers the
+     * same handle for its type, then inserts that event.
+     *
+     * @param type      the handle of the type, given by this store.
+     * @param timestamp the timestamp of the event.
+     * @throws IllegalArgumentException if the handle is null or was
+     *                                  given by another store.
+     */
+    default void insert(TypeHandle type, long timestamp) {
+        if (type == null || handle(type.type()) != type)
+            throw new IllegalArgumentException();
+
+        insert(new Event(type.type(), timestamp));
+    }
+
+    /**
+     * Stores a batch of events. The default implementation inserts
+     * them one by one, the implementations override it to group the
+     * events by type and take the structure of each type only once.
+     *
+     * @param events the events to store, none of them may be null.
+     * @throws IllegalArgumentException if the collection or any of its
+     *                                  events is null, then nothing is
+     *                                  stored.
+     */
+    default void insertAll(Collection<? extends Event> events) {
+        EventStoreArguments.checkEvents(events);
+
+        for (Event event : events) {
+            insert(event);
+        }
+    }
+
 
     /**
      * Removes all events of specific type.
@@ -23,15 +85,334 @@ public interface EventStore {
      */
     void removeAll(String type);
 
+    /**
+     * Removes the events of a type whose timestamp is between
+     * startTime and endTime, both inclusive. The default
+     * implementation removes them one by one through
+     * {@link EventIterator#remove()}, the implementations drop the
+     * parts of their structure that are inside the range at once.
+     * <p>
+     * The iterators already open over the range do not return the
+     * removed events from their next call to moveNext on, the
+     * current event of an iterator stays its current event.
+     *
+     * @param type      The type of the events to remove.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @return the number of events removed.
+     * @throws IllegalArgumentException if the type is null or blank,
+     *                                  startTime is negative or
+     *                                  endTime is before startTime.
+     */
+    default long removeRange(String type, long startTime, long endTime) {
+        EventStoreArguments.checkRange(type, startTime, endTime);
+
+        long removed = 0;
+        try (EventIterator iterator = query(type, startTime, endTime)) {
+            while (iterator.moveNext()) {
+                iterator.remove();
+                removed++;
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return removed;
+    }
+
+    /**
+     * Counts the events of a type whose timestamp is between
+     * startTime and endTime, both inclusive. The default
+     * implementation walks the result of
+     * {@link #query(String, long, long)}, the implementations answer
+     * from the sizes they keep for each part of their structure,
+     * without building any event.
+     *
+     * @param type      The type we are counting.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @return the number of events.
+     * @throws IllegalArgumentException if the type is null or blank,
+     *                                  startTime is negative or
+     *                                  endTime is before startTime.
+     */
+    default long count(String type, long startTime, long endTime) {
+        EventStoreArguments.checkRange(type, startTime, endTime);
+
+        long count = 0;
+        try (EventIterator iterator = query(type, startTime, endTime)) {
+            while (iterator.moveNext()) {
+                count++;
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return count;
+    }
+
+    /**
+     * The smallest timestamp of the events of a type between
+     * startTime and endTime, both inclusive.
+     *
+     * @return the timestamp, empty if there is no such event.
+     * @throws IllegalArgumentException as {@link #count}.
+     */
+    default OptionalLong first(String type, long startTime, long endTime) {
+        EventStoreArguments.checkRange(type, startTime, endTime);
+
+        try (EventIterator iterator = query(type, startTime, endTime)) {
+            return iterator.moveNext()
+                    ? OptionalLong.of(iterator.current().timestamp())
+                    : OptionalLong.empty();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The greatest timestamp of the events of a type between
+     * startTime and endTime, both inclusive. The default
+     * implementation walks the whole result of
+     * {@link #query(String, long, long)}.
+     *
+     * @return the timestamp, empty if there is no such event.
+     * @throws IllegalArgumentException as {@link #count}.
+     */
+    default OptionalLong last(String type, long startTime, long endTime) {
+        EventStoreArguments.checkRange(type, startTime, endTime);
+
+        OptionalLong last = OptionalLong.empty();
+        try (EventIterator iterator = query(type, startTime, endTime)) {
+            while (iterator.moveNext()) {
+                last = OptionalLong.of(iterator.current().timestamp());
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return last;
+    }
+
+    /**
+     * Counts the events of a type in buckets of time. The window
+     * between startTime and endTime, both inclusive, is cut in
+     * buckets of the same width, the smallest width that covers the
+     * window, and the position i of the result is the number of
+     * events of the bucket i. The last buckets may end after endTime,
+     * no event after endTime is counted. The default implementation
+     * answers each bucket with {@link #count}.
+     *
+     * @param type      The type we are counting.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @param buckets   The number of buckets.
+     * @return the count of each bucket, in time order.
+     * @throws IllegalArgumentException as {@link #count}, or if the
+     *                                  number of buckets is not
+     *                                  positive.
+     */
+    default long[] histogram(String type, long startTime, long endTime, int buckets) {
+        EventStoreArguments.checkHistogram(type, startTime, endTime, buckets);
+
+        return EventHistogram.compute(startTime, endTime, buckets,
+                (from, to) -> count(type, from, to), false);
+    }
+
+    /**
+     * Collects the events of a type between startTime and endTime,
+     * both inclusive, as {@link java.util.stream.Stream#collect} does:
+     * the collector receives the events in timestamp order, or, when
+     * the implementation scans in parallel, the containers of the
+     * parts of the window are combined in time order. The default
+     * implementation collects the result of
+     * {@link #query(String, long, long)} on the calling thread.
+     *
+     * @param type      The type we are scanning.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @param collector How the events are collected.
+     * @return the result of the collector.
+     * @throws IllegalArgumentException as {@link #count}, or if the
+     *                                  collector is null.
+     */
+    default <A, R> R scan(String type, long startTime, long endTime,
+                          Collector<? super Event, A, R> collector) {
+        EventStoreArguments.checkScan(type, startTime, endTime, collector);
+
+        A container = collector.supplier().get();
+        BiConsumer<A, ? super Event> accumulator = collector.accumulator();
+        try (EventIterator iterator = query(type, startTime, endTime)) {
+            while (iterator.moveNext()) {
+                accumulator.accept(container, iterator.current());
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return collector.finisher().apply(container);
+    }
+
+    /**
+     * A stream of the events of a type between startTime and endTime,
+     * both inclusive, ordered by timestamp. The default implementation
+     * streams the iterator of {@link #query(String, long, long)}, it
+     * can not be split; the implementations give a spliterator over
+     * their own structure, which splits for parallel streams and does
+     * not lock for each event. Closing the stream releases what it
+     * holds.
+     *
+     * @param type      The type we are querying for.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @return a sequential stream, {@link Stream#parallel()} makes it
+     * parallel.
+     * @throws IllegalArgumentException as {@link #count}.
+     */
+    default Stream<Event> stream(String type, long startTime, long endTime) {
+        EventStoreArguments.checkRange(type, startTime, endTime);
+
+        EventIterator iterator = query(type, startTime, endTime);
+        Spliterator<Event> spliterator = Spliterators.spliteratorUnknownSize(
+                new EventIteratorAdapter(iterator), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                iterator.close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
     /**
      * Retrieves an iterator for events based on their type and timestamp.
      *
      * @param type      The type we are querying for.
      * @param startTime Start timestamp (inclusive).
-     * @param endTime   End timestamp (exclusive).
+     * @param endTime   End timestamp (inclusive).
      * @return An iterator where all its events have same type as
      * {@param type} and timestamp between {@param startTime}
-     * (inclusive) and {@param endTime} (exclusive).
+     * and {@param endTime}, both inclusive.
      */
     EventIterator query(String type, long startTime, long endTime);
+
+    /**
+     * Retrieves an iterator over the same events of
+     * {@link #query(String, long, long)} that is confined to a single
+     * thread: it takes no lock and makes no atomic update on each
+     * {@link EventIterator#moveNext}. Only one thread may use it at a
+     * time, the one that called this method or one it was handed to
+     * through a happens-before edge (an executor, a concurrent queue);
+     * using it from two threads at the same time has an undefined
+     * result, nothing detects it. The store itself stays safe to use by
+     * other threads meanwhile, the iterator is as weakly consistent as
+     * the one of query. The default implementation returns the iterator
+     * of query, which is also safe on a single thread.
+     *
+     * @param type      The type we are querying for.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @return An iterator for a single thread.
+     * @throws IllegalArgumentException as {@link #count}.
+     */
+    default EventIterator queryConfined(String type, long startTime, long endTime) {
+        return query(type, startTime, endTime);
+    }
+
+    /**
+     * Retrieves one iterator over the events of many types, ordered by
+     * timestamp; the events of the same timestamp come in the order of
+     * the types in the collection. The default implementation merges
+     * the iterators of {@link #query(String, long, long)} of each type
+     * as they are consumed, see {@link MergingEventIterator}, nothing
+     * is copied. A type repeated in the collection is queried once.
+     *
+     * @param types     The types we are querying for.
+     * @param startTime Start timestamp (inclusive).
+     * @param endTime   End timestamp (inclusive).
+     * @return An iterator over the events of all the types.
+     * @throws IllegalArgumentException if the collection is null, any
+     *                                  of its types is null or blank,
+     *                                  startTime is negative or
+     *                                  endTime is before startTime.
+     */
+    default EventIterator queryAll(Collection<String> types, long startTime, long endTime) {
+        EventStoreArguments.checkRange(types, startTime, endTime);
+
+        List<EventIterator> sources = new ArrayList<>();
+        for (String type : new LinkedHashSet<>(types)) {
+            sources.add(query(type, startTime, endTime));
+        }
+        return new MergingEventIterator(sources);
+    }
+
+    /**
+     * The types of the store that start with the prefix, in order.
+     * The empty prefix gives every type. The set is read-only: a
+     * weakly consistent view of the types of the store, or, for a
+     * store that gathers its types from several others, such as
+     * {@link EventStoreSharded}, a snapshot taken by the call.
+     *
+     * @param prefix The prefix of the types.
+     * @throws IllegalArgumentException if the prefix is null.
+     */
+    NavigableSet<String> typesWithPrefix(String prefix);
+
+    /**
+     * The types of the store matched by a glob pattern, in order:
+     * '*' matches any sequence of characters, '?' matches one
+     * character, any other character matches itself, so
+     * "rig42.*.pressure" matches "rig42.pump.pressure".
+     *
+     * @param glob The pattern of the types.
+     * @throws IllegalArgumentException if the pattern is null.
+     */
+    default NavigableSet<String> typesMatching(String glob) {
+        EventStoreArguments.checkPattern(glob);
+
+        return TypeDictionary.matching(glob, this::typesWithPrefix);
+    }
+
+    /**
+     * {@link #queryAll} of the types that start with the prefix.
+     *
+     * @throws IllegalArgumentException if the prefix is null,
+     *                                  startTime is negative or
+     *                                  endTime is before startTime.
+     */
+    default EventIterator queryPrefix(String prefix, long startTime, long endTime) {
+        return queryAll(typesWithPrefix(prefix), startTime, endTime);
+    }
+
+    /**
+     * {@link #queryAll} of the types matched by the glob pattern, see
+     * {@link #typesMatching}.
+     *
+     * @throws IllegalArgumentException if the pattern is null,
+     *                                  startTime is negative or
+     *                                  endTime is before startTime.
+     */
+    default EventIterator queryGlob(String glob, long startTime, long endTime) {
+        return queryAll(typesMatching(glob), startTime, endTime);
+    }
+
+    /**
+     * {@link #removeAll} of each type that starts with the prefix.
+     * The empty prefix removes every type.
+     *
+     * @throws IllegalArgumentException if the prefix is null.
+     */
+    default void removeAllWithPrefix(String prefix) {
+        for (String type : new ArrayList<>(typesWithPrefix(prefix))) {
+            removeAll(type);
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package net.intelie.challenges;
+
+import java.util.Collection;
+
+final class EventStoreArguments {
+
+  // The validations shared by every EventStore implementation, so all of them reject the same
+  // arguments with IllegalArgumentException.
+
+  private EventStoreArguments() {}
+
+  static void checkEvent(Event event) {
+    if (event == null)
+      throw new IllegalArgumentException();
+  }
+
+  static void checkEvents(Collection<? extends Event> events) {
+    if (events == null)
+      throw new IllegalArgumentException();
+
+    for (Event event : events) {
+      checkEvent(event);
+    }
+  }
+
+  static void checkType(String type) {
+    if (type == null || type.trim().isEmpty())
+      throw new IllegalArgumentException();
+  }
+
+  // a prefix or a pattern of types, the empty one included
+  static void checkPattern(String pattern) {
+    if (pattern == null)
+      throw new IllegalArgumentException();
+  }
+
+  static void checkTypes(Collection<String> types) {
+    if (types == null)
+      throw new IllegalArgumentException();
+
+    for (String type : types) {
+      checkType(type);
+    }
+  }
+
+  static void checkRange(String type, long startTime, long endTime) {
+    checkType(type);
+    if (startTime < 0 || endTime < startTime)
+      throw new IllegalArgumentException();
+  }
+
+  static void checkRange(Collection<String> types, long startTime, long endTime) {
+    checkTypes(types);
+    if (startTime < 0 || endTime < startTime)
+      throw new IllegalArgumentException();
+  }
+
+  static void checkScan(String type, long startTime, long endTime, Object collector) {
+    checkRange(type, startTime, endTime);
+    if (collector == null)
+      throw new IllegalArgumentException();
+  }
+
+  static void checkHistogram(String type, long startTime, long endTime, int buckets) {
+    checkRange(type, startTime, endTime);
+    if (buckets <= 0)
+      throw new IllegalArgumentException();
+  }
+}
@@ -0,0 +1,159 @@
+package net.intelie.challenges;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class EventStoreColumnar implements EventStore {
+
+  // An EventStore that does not keep the Event objects: the timestamps of each type are stored as
+  // primitives in a TimestampColumn, growable long[] chunks (HeapTimestampChunk) kept sorted by
+  // timestamp. A stored Event costs about 8 bytes instead of the ~90 bytes of an Event plus its
+  // skip list node in EventStoreMemory, and the GarbageCollector traces a few thousand arrays
+  // instead of one object per Event. The price is that the Event is rebuilt when
+  // EventIterator.current is called, so the instance returned is equal to (see Event.equals), but
+  // not the same as, the inserted one.
+  // The ConcurrentHashMap maps each type to its column; the key is the only String kept for the
+  // type and it is shared by every Event the iterators build.
+  // The cost Big-O of operations is:
+  // add: O(1) for events arriving in order, O(log n + chunk) otherwise, see TimestampColumn;
+  // removerAll: O(1), removing the column from the ConcurrentHashMap;
+  // typesWithPrefix: O(log T), the types are also kept sorted in a TypeDictionary;
+  // removeRange: O(log n + c), c represents the chunks inside the range, dropped whole;
+  // query: O(log n) to position the iterator, then O(1) for each moveNext;
+  // count: O(log n + c), first, last: O(log n), no Event is built;
+  // stream: the spliterator copies the timestamps a block at a time under the read lock and splits
+  // the window in halves of time for the parallel streams (see TimestampColumn.EventSpliterator);
+
+  private final ConcurrentHashMap<String, TimestampColumn> columns = new ConcurrentHashMap<>();
+  private final TypeDictionary types = new TypeDictionary();
+  private final TypeRegistry registry = new TypeRegistry();
+
+  @Override
+  public void insert(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    columnOf(event.type()).add(event.timestamp());
+  }
+
+  @Override
+  public TypeHandle handle(String type) {
+    return registry.handle(type);
+  }
+
+  @Override
+  public void insert(TypeHandle type, long timestamp) {
+    registry.check(type);
+
+    columnOf(type.type()).add(timestamp);
+  }
+
+  @Override
+  public void insertAll(Collection<? extends Event> events) {
+    EventStoreArguments.checkEvents(events);
+
+    for (Map.Entry<String, List<Event>> group : EventBatch.sortedByType(events).entrySet()) {
+      columnOf(group.getKey()).addAll(EventBatch.timestamps(group.getValue()));
+    }
+  }
+
+  @Override
+  public void removeAll(String type) {
+    EventStoreArguments.checkType(type);
+
+    columns.computeIfPresent(type, (key, column) -> {
+      types.remove(key);
+      return null;
+    });
+  }
+
+  @Override
+  public long removeRange(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? 0 : column.removeRange(startTime, endTime);
+  }
+
+  @Override
+  public long count(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? 0 : column.count(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong first(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? OptionalLong.empty() : column.first(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong last(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? OptionalLong.empty() : column.last(startTime, endTime);
+  }
+
+  @Override
+  public NavigableSet<String> typesWithPrefix(String prefix) {
+    EventStoreArguments.checkPattern(prefix);
+
+    return types.withPrefix(prefix);
+  }
+
+  @Override
+  public Stream<Event> stream(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    return StreamSupport.stream(column == null
+        ? Spliterators.<Event>emptySpliterator()
+        : column.spliterator(startTime, endTime), false);
+  }
+
+  @Override
+  public EventIterator queryConfined(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    return new EventIteratorConfined(column == null
+        ? Collections.<Event>emptyIterator()
+        : column.confinedIterator(startTime, endTime));
+  }
+
+  @Override
+  public EventIterator query(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    TimestampColumn column = columns.get(type);
+    if (column == null) {
+      return new EventIteratorColumnar(type, null);
+    }
+
+    return new EventIteratorColumnar(column.type(), column.cursor(startTime, endTime));
+  }
+
+  private TimestampColumn columnOf(String type) {
+    TimestampColumn column = columns.get(type);
+    if (column == null) {
+      column = columns.computeIfAbsent(type, key -> {
+        types.add(key);
+        return new TimestampColumn(key, HeapTimestampChunk::new);
+      });
+    }
+
+    return column;
+  }
+}
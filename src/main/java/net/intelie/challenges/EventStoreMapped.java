@@ -0,0 +1,308 @@
+package net.intelie.challenges;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class EventStoreMapped implements EventStore, AutoCloseable {
+
+  // A persistent EventStore. Each type is a TimestampColumn whose chunks are segment files mapped
+  // in memory (MappedTimestampChunk), inside one directory per type:
+  //   <directory>/<type as hex of its UTF-8 bytes>/<sequence>.seg
+  // Each segment file holds its own count of timestamps, sorted, and the segments of a type never
+  // overlap, so reopening the store only maps the files, reads their headers and sorts them by
+  // their first timestamp: the cost is O(segments), not O(events), and a billion events are a few
+  // thousand segments. The iterators read the timestamps straight from the mapped pages.
+  // The OS writes the dirty pages back on its own; flush forces them to disk and close flushes,
+  // unmaps and leaves the files in place. removeAll deletes the segments of the type before the
+  // type leaves the map, so a new column of the same type never coexists with the old files.
+  // A crash in the middle of a chunk split may leave a segment inconsistent, there is no journal.
+  // The cost Big-O of operations is the same of EventStoreColumnar, plus the file creation when
+  // a segment is opened or split.
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final Path directory;
+  private final ConcurrentHashMap<String, TimestampColumn> columns = new ConcurrentHashMap<>();
+  private final TypeDictionary types = new TypeDictionary();
+  private final TypeRegistry registry = new TypeRegistry();
+  private final AtomicLong segmentSequence = new AtomicLong();
+  private volatile boolean closed;
+
+  /**
+   * Opens the store kept in the directory, creating it if needed.
+   *
+   * @param directory where the segment files are kept.
+   * @throws IOException if the directory can not be read or created.
+   */
+  public EventStoreMapped(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+
+    try (DirectoryStream<Path> typeDirectories = Files.newDirectoryStream(directory)) {
+      for (Path typeDirectory : typeDirectories) {
+        if (Files.isDirectory(typeDirectory)) {
+          openType(typeDirectory);
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public void insert(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    // a column discarded by a concurrent removeAll refuses the timestamp, then the insert goes to
+    // the new column of the type, as if it happened after the removeAll
+    while (!columnOf(event.type()).add(event.timestamp())) {
+      checkOpen();
+    }
+  }
+
+  @Override
+  public TypeHandle handle(String type) {
+    checkOpen();
+
+    return registry.handle(type);
+  }
+
+  @Override
+  public void insert(TypeHandle type, long timestamp) {
+    registry.check(type);
+
+    // as insert of an Event, a column released by a concurrent removeAll refuses the timestamp
+    while (!columnOf(type.type()).add(timestamp)) {
+      checkOpen();
+    }
+  }
+
+  @Override
+  public void insertAll(Collection<? extends Event> events) {
+    EventStoreArguments.checkEvents(events);
+
+    for (Map.Entry<String, List<Event>> group : EventBatch.sortedByType(events).entrySet()) {
+      long[] timestamps = EventBatch.timestamps(group.getValue());
+      while (!columnOf(group.getKey()).addAll(timestamps)) {
+        checkOpen();
+      }
+    }
+  }
+
+  @Override
+  public void removeAll(String type) {
+    EventStoreArguments.checkType(type);
+    checkOpen();
+
+    columns.computeIfPresent(type, (key, column) -> {
+      types.remove(key);
+      column.discard();
+      return null;
+    });
+  }
+
+  @Override
+  public long removeRange(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? 0 : column.removeRange(startTime, endTime);
+  }
+
+  @Override
+  public long count(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? 0 : column.count(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong first(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? OptionalLong.empty() : column.first(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong last(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? OptionalLong.empty() : column.last(startTime, endTime);
+  }
+
+  @Override
+  public NavigableSet<String> typesWithPrefix(String prefix) {
+    EventStoreArguments.checkPattern(prefix);
+    checkOpen();
+
+    return types.withPrefix(prefix);
+  }
+
+  @Override
+  public Stream<Event> stream(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return StreamSupport.stream(column == null
+        ? Spliterators.<Event>emptySpliterator()
+        : column.spliterator(startTime, endTime), false);
+  }
+
+  @Override
+  public EventIterator queryConfined(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return new EventIteratorConfined(column == null
+        ? Collections.<Event>emptyIterator()
+        : column.confinedIterator(startTime, endTime));
+  }
+
+  @Override
+  public EventIterator query(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    if (column == null) {
+      return new EventIteratorColumnar(type, null);
+    }
+
+    return new EventIteratorColumnar(column.type(), column.cursor(startTime, endTime));
+  }
+
+  /**
+   * Forces every segment to be written to disk.
+   */
+  public void flush() {
+    checkOpen();
+
+    for (TimestampColumn column : columns.values()) {
+      column.flush();
+    }
+  }
+
+  /**
+   * Flushes and unmaps every segment, the files stay in the directory to be opened again.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    types.clear();
+    for (String type : columns.keySet()) {
+      TimestampColumn column = columns.remove(type);
+      if (column != null) {
+        column.flush();
+        column.release();
+      }
+    }
+  }
+
+  private void openType(Path typeDirectory) {
+    String type = decodeType(typeDirectory.getFileName().toString());
+    List<TimestampChunk> chunks = new ArrayList<>();
+    try (DirectoryStream<Path> segments =
+        Files.newDirectoryStream(typeDirectory, "*" + SEGMENT_SUFFIX)) {
+      for (Path segment : segments) {
+        String name = segment.getFileName().toString();
+        long sequence =
+            Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+        segmentSequence.accumulateAndGet(sequence + 1, Math::max);
+
+        MappedTimestampChunk chunk = MappedTimestampChunk.open(segment);
+        if (chunk.size == 0) {
+          chunk.discard();
+        } else {
+          chunks.add(chunk);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    if (!chunks.isEmpty()) {
+      chunks.sort(Comparator.<TimestampChunk>comparingLong(chunk -> chunk.get(0))
+          .thenComparingLong(TimestampChunk::last));
+      types.add(type);
+      columns.put(type, new TimestampColumn(type, allocatorFor(typeDirectory), chunks));
+    }
+  }
+
+  private TimestampColumn columnOf(String type) {
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    if (column == null) {
+      column = columns.computeIfAbsent(type, key -> {
+        Path typeDirectory = directory.resolve(encodeType(key));
+        try {
+          Files.createDirectories(typeDirectory);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        types.add(key);
+        return new TimestampColumn(key, allocatorFor(typeDirectory));
+      });
+    }
+
+    // close may have released the columns between the check and the lookup
+    if (closed) {
+      column.release();
+      checkOpen();
+    }
+    return column;
+  }
+
+  private Supplier<TimestampChunk> allocatorFor(Path typeDirectory) {
+    return () -> MappedTimestampChunk.create(typeDirectory.resolve(
+        String.format("%016x%s", segmentSequence.getAndIncrement(), SEGMENT_SUFFIX)));
+  }
+
+  // the type may hold any character, so the directory name is the hex of its UTF-8 bytes
+  private static String encodeType(String type) {
+    StringBuilder name = new StringBuilder();
+    for (byte b : type.getBytes(StandardCharsets.UTF_8)) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return name.toString();
+  }
+
+  private static String decodeType(String name) {
+    byte[] bytes = new byte[name.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(name.substring(2 * i, 2 * i + 2), 16);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("the store is closed");
+  }
+}
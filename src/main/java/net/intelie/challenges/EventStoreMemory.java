@@ -1,71 +1,423 @@
 package net.intelie.challenges;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class EventStoreMemory implements EventStore {
 
   // I'm using ConcurrentHashMap because the helper segregation the Event by type, for this the key
-  // of ConcurrentHashMap is the type of Event. The value of ConcurrentHashMap is ArrayList build
-  // using the "helper" of Collections.synchronizedList to get a Thread-safe structure. The List
-  // contains all the Event of same type. The is useful to removeAll Event of same type and helper
-  // en the query method.
+  // of ConcurrentHashMap is the type of Event. The value of ConcurrentHashMap is an EventTimeline,
+  // an index of all the Event of same type ordered by timestamp (see EventTimeline). The is useful
+  // to removeAll Event of same type and helper en the query method, which only visits the Event
+  // inside the requested window instead of filtering every Event of the type.
   // The cost Big-O of operations is:
-  // add: at the majority is O(1), but if the ArrayList of Event the type X need more space the cost
-  // became O(n), because to increase its own space, the ArrayList needs to copy all the elements of
-  // the new array;
+  // add: O(log n), n represents the number of Event the have same type;
+  // insert of a TypeHandle: O(log n) with no lookup of the type, the handle keeps the timeline of
+  // its type and the Event share the String of the handle, so a producer that resolved its type
+  // once neither builds, hashes nor compares a String for each Event (see TypeRegistry);
+  // insertAll: O(b log b) to group and sort the batch, then one map lookup per type and O(log n)
+  // per Event, b represents the size of the batch;
   // removerAll: the cost is O(1), because removing ConcurrentHashMap is O(1)
-  // when the list stops being pointed, the GarbageCollector will clear it from memory;
-  // query: the cost is O(1 + k), k represents the number of Event the have same type;
+  // when the timeline stops being pointed, the GarbageCollector will clear it from memory;
+  // typesWithPrefix: O(log T), T represents the number of types, the types are also kept sorted in
+  // a TypeDictionary, so the prefix and glob queries never scan the keys of the ConcurrentHashMap;
+  // query: the cost is O(log n) to position the iterator, then O(1) for each moveNext, the result
+  // is never copied (see EventIteratorMemory);
+  // removeRange: O(log p) for each partition of time inside the range, which is dropped whole, plus
+  // O(log n) for each Event removed from the two partitions on the edges of the range;
+  // count: O(log p) plus O(1) for each partition inside the window, only the Event of the two
+  // partitions on its edges are walked; first, last: O(log p + log n); no Event is copied;
+  // histogram: a count for each bucket, answered by the counts of the partitions and of their
+  // slots, which are the rollups of the timeline; the buckets of a window of many partitions are
+  // counted in parallel, in the common ForkJoinPool, the timeline is lock-free for readers;
+  // scan: O(k / cores + log p), the partitions of the window, and the slots of the big ones, are
+  // collected in parallel by a ForkJoinPool (see ParallelScan);
+  // stream: a spliterator over the skip lists of the partitions, no lock for each Event, split by
+  // partition and by time for the parallel streams (see EventTimeline.EventSpliterator);
+  // dropPartitionsBefore, enforceRetention: O(log p) for each partition of time dropped, p
+  // represents the number of partitions of the type, the Event of a partition are dropped all at
+  // once (see EventTimeline); the width of the partitions may be set per type;
+  // compactBefore: O(n) for each partition sealed, its Event leave the skip list for a block of
+  // delta-of-delta encoded keys, a few bytes per Event, read back by the same cursors that walk
+  // the skip lists (see SealedBlock); an EventCompactor runs it in background;
+  // subscribe: the insert pushes each Event to the subscriptions of its type, O(s) for s
+  // subscriptions, and a read of a counter while there is none (see Subscriptions);
+  // metrics: a read of a volatile boolean for each insert and query while they are switched off
+  // (see EventStoreMetrics);
+  // There is no lock in the store: the ConcurrentHashMap creates the timeline of a new type
+  // atomically with computeIfAbsent and the timeline itself is lock-free, so inserts into
+  // different types never touch the same structure and readers never block writers.
 
-  private ConcurrentHashMap<String, List<Event>> eventStoreMap = new ConcurrentHashMap<>();
+  // the windows of at least this number of partitions are counted in parallel by histogram
+  private static final long PARALLEL_HISTOGRAM_PARTITIONS = 16;
 
-  @Override
-  public synchronized void insert(Event event) {
-    if (event == null)
+  private final ConcurrentHashMap<String, EventTimeline> eventStoreMap = new ConcurrentHashMap<>();
+  private final TypeDictionary types = new TypeDictionary();
+  private final TypeRegistry registry = new TypeRegistry();
+  private final EventStoreMetrics metrics = new EventStoreMetrics(eventStoreMap);
+  private final Subscriptions subscriptions = new Subscriptions();
+  private final long partitionWidth;
+  // the widths of the types that do not use the one of the store
+  private final ConcurrentHashMap<String, Long> partitionWidths = new ConcurrentHashMap<>();
+
+  public EventStoreMemory() {
+    this(EventTimeline.DEFAULT_PARTITION_WIDTH);
+  }
+
+  /**
+   * @param partitionWidth the width, in the unit of the timestamps, of the partitions of time
+   *                       the Event of a type are kept in, the granularity of the retention.
+   * @throws IllegalArgumentException if the width is not positive.
+   */
+  public EventStoreMemory(long partitionWidth) {
+    if (partitionWidth <= 0)
       throw new IllegalArgumentException();
 
-    List<Event> trackList = eventStoreMap.get(event.type());
-    if (trackList == null) {
-      trackList = Collections.synchronizedList(new ArrayList<Event>());
-      this.eventStoreMap.put(event.type(), trackList);
+    this.partitionWidth = partitionWidth;
+  }
+
+  @Override
+  public void insert(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    timelineOf(event.type()).add(event);
+    if (subscriptions.active()) {
+      subscriptions.publish(event);
+    }
+    if (metrics.insertsEnabled) {
+      metrics.inserted(1);
+    }
+  }
+
+  /**
+   * Registers a continuous query: each Event of the type inserted from now on, with its timestamp
+   * between startTime and endTime, is pushed to the subscription by the insert that accepted it.
+   * A full buffer drops the Event for this subscription only, the insert never waits for a
+   * consumer, see Subscription. Closing the subscription stops the delivery.
+   *
+   * @param type      the type of the Event.
+   * @param startTime start timestamp (inclusive).
+   * @param endTime   end timestamp (inclusive), Long.MAX_VALUE for every future Event.
+   * @param capacity  the number of Event the buffer holds, rounded up to a power of two.
+   * @throws IllegalArgumentException if the type is null or blank, startTime is negative or after
+   *                                  endTime, or the capacity is not positive or above 2^30.
+   */
+  public Subscription subscribe(String type, long startTime, long endTime, int capacity) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    Subscription subscription =
+        new Subscription(type, startTime, endTime, capacity, subscriptions);
+    subscriptions.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * The metrics of this store, all switched off until enabled, see EventStoreMetrics.
+   */
+  public EventStoreMetrics metrics() {
+    return metrics;
+  }
+
+  @Override
+  public TypeHandle handle(String type) {
+    return registry.handle(type);
+  }
+
+  @Override
+  public void insert(TypeHandle type, long timestamp) {
+    registry.check(type);
+
+    // a timeline removed after the check gets the Event as an insert racing with removeAll would
+    EventTimeline timeline = (EventTimeline) type.resolved;
+    if (timeline == null || timeline.removed) {
+      timeline = timelineOf(type.type());
+      type.resolved = timeline;
+    }
+    Event event = new Event(type.type(), timestamp);
+    timeline.add(event);
+    if (subscriptions.active()) {
+      subscriptions.publish(event);
     }
+    if (metrics.insertsEnabled) {
+      metrics.inserted(1);
+    }
+  }
+
+  @Override
+  public void insertAll(Collection<? extends Event> events) {
+    EventStoreArguments.checkEvents(events);
 
-    trackList.add(event);
+    for (Map.Entry<String, List<Event>> group : EventBatch.sortedByType(events).entrySet()) {
+      timelineOf(group.getKey()).addAll(group.getValue());
+      if (subscriptions.active()) {
+        for (Event event : group.getValue()) {
+          subscriptions.publish(event);
+        }
+      }
+    }
+    if (metrics.insertsEnabled) {
+      metrics.inserted(events.size());
+    }
   }
 
   @Override
   public void removeAll(String type) {
-    if (type == null || type != null && type.trim().isEmpty())
+    EventStoreArguments.checkType(type);
+
+    eventStoreMap.computeIfPresent(type, (key, timeline) -> {
+      types.remove(key);
+      timeline.removed = true;
+      return null;
+    });
+  }
+
+  @Override
+  public long removeRange(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return timeline == null ? 0 : timeline.removeRange(startTime, endTime);
+  }
+
+  @Override
+  public long count(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return timeline == null ? 0 : timeline.count(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong first(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return timeline == null ? OptionalLong.empty() : timeline.first(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong last(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return timeline == null ? OptionalLong.empty() : timeline.last(startTime, endTime);
+  }
+
+  @Override
+  public long[] histogram(String type, long startTime, long endTime, int buckets) {
+    EventStoreArguments.checkHistogram(type, startTime, endTime, buckets);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    if (timeline == null) {
+      return new long[buckets];
+    }
+
+    // the partitions of the type, which may have a width of its own, not the one of the store
+    boolean parallel = buckets > 1
+        && (endTime - startTime) / timeline.partitionWidth() >= PARALLEL_HISTOGRAM_PARTITIONS;
+    return EventHistogram.compute(startTime, endTime, buckets, timeline::count, parallel);
+  }
+
+  @Override
+  public NavigableSet<String> typesWithPrefix(String prefix) {
+    EventStoreArguments.checkPattern(prefix);
+
+    return types.withPrefix(prefix);
+  }
+
+  /**
+   * Collects the window in parallel in the common ForkJoinPool, see
+   * {@link #scan(String, long, long, Collector, ForkJoinPool)}.
+   */
+  @Override
+  public <A, R> R scan(String type, long startTime, long endTime,
+      Collector<? super Event, A, R> collector) {
+    return scan(type, startTime, endTime, collector, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Collects the Event of the window in parallel: the window is split by partition of time and
+   * the partitions with many Event by time again, each part is collected by a task of the pool in
+   * a container of its own and the containers are combined in time order.
+   *
+   * @param pool where the parts of the window are collected.
+   * @throws IllegalArgumentException as {@link #count}, or if the collector or the pool is null.
+   */
+  public <A, R> R scan(String type, long startTime, long endTime,
+      Collector<? super Event, A, R> collector, ForkJoinPool pool) {
+    EventStoreArguments.checkScan(type, startTime, endTime, collector);
+    if (pool == null)
       throw new IllegalArgumentException();
 
-    eventStoreMap.remove(type);
+    EventTimeline timeline = eventStoreMap.get(type);
+    A container = timeline == null
+        ? collector.supplier().get()
+        : pool.invoke(new ParallelScan<>(collector,
+            timeline.partitionsBetween(startTime, endTime), startTime, endTime));
+    return collector.finisher().apply(container);
+  }
+
+  @Override
+  public Stream<Event> stream(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return StreamSupport.stream(timeline == null
+        ? Spliterators.<Event>emptySpliterator()
+        : timeline.spliterator(startTime, endTime), false);
+  }
+
+  @Override
+  public EventIterator queryConfined(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return new EventIteratorConfined(metrics.meter(timeline == null
+        ? Collections.<Event>emptyIterator()
+        : timeline.range(startTime, endTime)));
   }
 
   @Override
-  public synchronized EventIterator query(String type, long startTime, long endTime) {
-    if (invalidArgumentsQuery(type, startTime, endTime))
+  public EventIterator query(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    if (timeline == null) {
+      return new EventIteratorMemory(metrics.meter(Collections.<Event>emptyIterator()));
+    }
+
+    // the iterator walks the timeline on demand, nothing is copied at query time
+    EventIterator iteratorResult =
+        new EventIteratorMemory(metrics.meter(timeline.range(startTime, endTime)));
+
+    return iteratorResult;
+  }
+
+  /**
+   * Sets the width of the partitions of time of a type, instead of the one of the store: a type
+   * that receives millions of Event per minute is better kept in partitions of seconds, so its
+   * appends land in a small open partition and its old Event are dropped in small steps. The width
+   * is taken when the type is created, it also applies after a removeAll of the type.
+   *
+   * @throws IllegalArgumentException if the type is null or blank or the width is not positive.
+   * @throws IllegalStateException if the type already holds Event in partitions of another width.
+   */
+  public void partitionWidth(String type, long width) {
+    EventStoreArguments.checkType(type);
+    if (width <= 0)
       throw new IllegalArgumentException();
 
-    if (!eventStoreMap.containsKey(type)) {
-      return new EventIteratorMemory(Collections.synchronizedList(new ArrayList<Event>()));
+    // the check and the store happen inside the bin of the type in the map of timelines, so a
+    // refused width is never stored and a timeline created meanwhile is seen
+    eventStoreMap.compute(type, (key, timeline) -> {
+      if (timeline != null && timeline.partitionWidth() != width)
+        throw new IllegalStateException("the type already has partitions of another width");
+      partitionWidths.put(key, width);
+      return timeline;
+    });
+  }
+
+  /**
+   * Drops the partitions of time of the type whose Event are all older than the timestamp, each
+   * one at once, whatever its number of Event: a removal from the map of partitions, the skip list
+   * of the partition is left to the GarbageCollector. The Event older than the timestamp that
+   * share a partition with newer ones stay, see removeRange for an exact cut.
+   *
+   * @return the number of Event dropped.
+   * @throws IllegalArgumentException if the type is null or blank.
+   */
+  public long dropPartitionsBefore(String type, long timestamp) {
+    EventStoreArguments.checkType(type);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return timeline == null ? 0 : timeline.dropBefore(timestamp);
+  }
+
+  /**
+   * Seals the partitions of time of the type whose Event are all older than the timestamp, except
+   * the partition the type appends to: their Event leave the skip lists for immutable blocks that
+   * keep only the keys, compressed, so they take a few bytes each instead of an Event object and
+   * its nodes. The queries read the sealed Event as any other, built again from the type, so they
+   * are equal to the ones inserted but no longer the same objects. The Event inserted later into a
+   * sealed partition are linked as usual and sealed by the next compaction.
+   *
+   * @return the number of Event sealed.
+   * @throws IllegalArgumentException if the type is null or blank.
+   */
+  public long compactBefore(String type, long timestamp) {
+    EventStoreArguments.checkType(type);
+
+    EventTimeline timeline = eventStoreMap.get(type);
+    return timeline == null ? 0 : timeline.sealBefore(timestamp);
+  }
+
+  /**
+   * Seals, for every type, the partitions of time whose Event are all older than the timestamp.
+   * See {@link #compactBefore(String, long)}.
+   *
+   * @return the number of Event sealed.
+   */
+  public long compactBefore(long timestamp) {
+    long sealed = 0;
+    for (EventTimeline timeline : eventStoreMap.values()) {
+      sealed += timeline.sealBefore(timestamp);
     }
+    return sealed;
+  }
 
-    Predicate<Event> condition =
-        (event) -> event.timestamp() >= startTime && event.timestamp() <= endTime;
+  /**
+   * Drops the Event the policy no longer retains, measuring the ages from the current time in
+   * milliseconds. See {@link #enforceRetention(RetentionPolicy, long)}.
+   */
+  public long enforceRetention(RetentionPolicy policy) {
+    return enforceRetention(policy, System.currentTimeMillis());
+  }
 
-    EventIterator iteratorResult = new EventIteratorMemory(Collections.synchronizedList(
-        eventStoreMap.get(type).stream().filter(condition).collect(Collectors.toList())));
+  /**
+   * Drops the Event the policy no longer retains, a whole partition of time at a time: the
+   * partitions whose Event are all older than the maximum age, then the oldest partitions of the
+   * types above the maximum number of Event. Inserts and queries are never blocked, an open
+   * iterator stops returning the Event of a dropped partition.
+   *
+   * @param now the time the ages are measured from.
+   * @return the number of Event dropped.
+   */
+  public long enforceRetention(RetentionPolicy policy, long now) {
+    if (policy == null)
+      throw new IllegalArgumentException();
 
-    return iteratorResult;
+    long dropped = 0;
+    for (EventTimeline timeline : eventStoreMap.values()) {
+      if (policy.maxAgeMillis() != Long.MAX_VALUE) {
+        dropped += timeline.dropBefore(now - policy.maxAgeMillis());
+      }
+      if (policy.maxEventsPerType() != Long.MAX_VALUE) {
+        dropped += timeline.trimTo(policy.maxEventsPerType());
+      }
+    }
+    return dropped;
   }
 
-  private boolean invalidArgumentsQuery(String type, long startTime, long endTime) {
-    return type == null || type != null && type.trim().isEmpty() || startTime < 0
-        || endTime < startTime;
+  private EventTimeline timelineOf(String type) {
+    // get first, so the common case of an existing type does not lock the bin of the map
+    EventTimeline timeline = eventStoreMap.get(type);
+    if (timeline == null) {
+      timeline = eventStoreMap.computeIfAbsent(type, key -> {
+        types.add(key);
+        return new EventTimeline(partitionWidths.getOrDefault(key, partitionWidth));
+      });
+    }
+
+    return timeline;
   }
 }
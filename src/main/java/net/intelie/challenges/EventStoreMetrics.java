@@ -0,0 +1,300 @@
+package net.intelie.challenges;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class EventStoreMetrics implements EventStoreMetricsMXBean {
+
+  // The instrumentation of an EventStoreMemory, read by pull (the getters and the histograms) or
+  // through JMX once registered. Each Metric is switched on and off at runtime, all start off: a
+  // disabled metric costs the store one read of a volatile boolean on its path, a plain load on
+  // x86, and the query iterators are only wrapped when a query metric is on.
+  // INSERTS adds to a LongAdder, striped so the threads inserting do not contend on one counter.
+  // QUERY_LATENCY and RESULT_SIZE wrap the cursor of the query: the latency is the time from the
+  // query to the end of its iterator (or its close), the size is the number of Event it returned,
+  // both recorded once in a ValueHistogram. An iterator dropped before its end and never closed
+  // is never recorded.
+  // The inserts per type are the sequences of the timelines, counted even with the metrics off;
+  // the bytes per type are estimated from the number of Event of the timeline and the size of its
+  // sealed blocks, only when read.
+  // The store has no lock to wait on: insert and query go through lock-free structures, so there
+  // is no lock wait time to measure.
+
+  // the heap of one Event in a timeline, with compressed references: the Event (24 bytes), its key
+  // (32), the node of the skip list (24) and a quarter of an index node (6 on average)
+  static final long ESTIMATED_BYTES_PER_EVENT = 86;
+
+  public enum Metric {
+    INSERTS, QUERY_LATENCY, RESULT_SIZE
+  }
+
+  private final Map<String, EventTimeline> timelines;
+  private final LongAdder inserts = new LongAdder();
+  private final ValueHistogram queryLatency = new ValueHistogram();
+  private final ValueHistogram resultSize = new ValueHistogram();
+  volatile boolean insertsEnabled;
+  volatile boolean queryLatencyEnabled;
+  volatile boolean resultSizeEnabled;
+  private volatile ObjectName registeredName;
+
+  EventStoreMetrics(Map<String, EventTimeline> timelines) {
+    this.timelines = timelines;
+  }
+
+  public void enable(Metric metric) {
+    set(metric, true);
+  }
+
+  public void disable(Metric metric) {
+    set(metric, false);
+  }
+
+  public boolean isEnabled(Metric metric) {
+    switch (metric) {
+      case INSERTS:
+        return insertsEnabled;
+      case QUERY_LATENCY:
+        return queryLatencyEnabled;
+      default:
+        return resultSizeEnabled;
+    }
+  }
+
+  /**
+   * The time, in nanoseconds, from each query metered to the end of its iterator.
+   */
+  public ValueHistogram queryLatency() {
+    return queryLatency;
+  }
+
+  /**
+   * The number of Event returned by each query metered.
+   */
+  public ValueHistogram resultSize() {
+    return resultSize;
+  }
+
+  /**
+   * Registers the metrics in the platform MBeanServer, under
+   * {@code net.intelie.challenges:type=EventStoreMemory,name=<name>}.
+   *
+   * @throws JMException if the name is invalid or already registered.
+   * @throws IllegalStateException if these metrics are already registered.
+   */
+  public synchronized ObjectName register(String name) throws JMException {
+    if (registeredName != null)
+      throw new IllegalStateException();
+
+    ObjectName objectName = new ObjectName("net.intelie.challenges:type=EventStoreMemory,name="
+        + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    registeredName = objectName;
+    return objectName;
+  }
+
+  /**
+   * Removes the metrics from the platform MBeanServer, nothing happens if they are not registered.
+   */
+  public synchronized void unregister() throws JMException {
+    if (registeredName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+      registeredName = null;
+    }
+  }
+
+  @Override
+  public long getInserts() {
+    return inserts.sum();
+  }
+
+  @Override
+  public Map<String, Long> getInsertsPerType() {
+    Map<String, Long> perType = new TreeMap<>();
+    for (Map.Entry<String, EventTimeline> entry : timelines.entrySet()) {
+      perType.put(entry.getKey(), entry.getValue().inserted());
+    }
+    return perType;
+  }
+
+  @Override
+  public Map<String, Long> getEstimatedBytesPerType() {
+    Map<String, Long> perType = new TreeMap<>();
+    for (Map.Entry<String, EventTimeline> entry : timelines.entrySet()) {
+      perType.put(entry.getKey(), entry.getValue().estimatedBytes(ESTIMATED_BYTES_PER_EVENT));
+    }
+    return perType;
+  }
+
+  @Override
+  public long getEstimatedBytes() {
+    long bytes = 0;
+    for (EventTimeline timeline : timelines.values()) {
+      bytes += timeline.estimatedBytes(ESTIMATED_BYTES_PER_EVENT);
+    }
+    return bytes;
+  }
+
+  @Override
+  public long getQueries() {
+    return Math.max(queryLatency.count(), resultSize.count());
+  }
+
+  @Override
+  public long getQueryLatencyP50Nanos() {
+    return queryLatency.valueAtPercentile(50);
+  }
+
+  @Override
+  public long getQueryLatencyP99Nanos() {
+    return queryLatency.valueAtPercentile(99);
+  }
+
+  @Override
+  public long getQueryLatencyP999Nanos() {
+    return queryLatency.valueAtPercentile(99.9);
+  }
+
+  @Override
+  public long getQueryLatencyMaxNanos() {
+    return queryLatency.max();
+  }
+
+  @Override
+  public long getResultSizeP50() {
+    return resultSize.valueAtPercentile(50);
+  }
+
+  @Override
+  public long getResultSizeP99() {
+    return resultSize.valueAtPercentile(99);
+  }
+
+  @Override
+  public long getResultSizeMax() {
+    return resultSize.max();
+  }
+
+  @Override
+  public boolean isInsertsEnabled() {
+    return insertsEnabled;
+  }
+
+  @Override
+  public void setInsertsEnabled(boolean enabled) {
+    insertsEnabled = enabled;
+  }
+
+  @Override
+  public boolean isQueryLatencyEnabled() {
+    return queryLatencyEnabled;
+  }
+
+  @Override
+  public void setQueryLatencyEnabled(boolean enabled) {
+    queryLatencyEnabled = enabled;
+  }
+
+  @Override
+  public boolean isResultSizeEnabled() {
+    return resultSizeEnabled;
+  }
+
+  @Override
+  public void setResultSizeEnabled(boolean enabled) {
+    resultSizeEnabled = enabled;
+  }
+
+  void inserted(long events) {
+    inserts.add(events);
+  }
+
+  /**
+   * The cursor of a query, wrapped to be metered when a query metric is on.
+   */
+  Iterator<Event> meter(Iterator<Event> cursor) {
+    boolean latency = queryLatencyEnabled;
+    boolean size = resultSizeEnabled;
+    if (!latency && !size) {
+      return cursor;
+    }
+    return new MeteredCursor(cursor, latency, size);
+  }
+
+  private void set(Metric metric, boolean enabled) {
+    switch (metric) {
+      case INSERTS:
+        insertsEnabled = enabled;
+        break;
+      case QUERY_LATENCY:
+        queryLatencyEnabled = enabled;
+        break;
+      default:
+        resultSizeEnabled = enabled;
+    }
+  }
+
+  // used by one iterator, under its monitor or confined to its thread, so the fields are plain
+  private final class MeteredCursor implements Iterator<Event>, AutoCloseable {
+    private final Iterator<Event> cursor;
+    private final long startNanos;
+    private final boolean latency;
+    private final boolean size;
+    private long returned;
+    private boolean recorded;
+
+    MeteredCursor(Iterator<Event> cursor, boolean latency, boolean size) {
+      this.cursor = cursor;
+      this.latency = latency;
+      this.size = size;
+      this.startNanos = latency ? System.nanoTime() : 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (cursor.hasNext()) {
+        return true;
+      }
+      record();
+      return false;
+    }
+
+    @Override
+    public Event next() {
+      if (!cursor.hasNext()) {
+        record();
+        throw new NoSuchElementException();
+      }
+      returned++;
+      return cursor.next();
+    }
+
+    @Override
+    public void remove() {
+      cursor.remove();
+    }
+
+    @Override
+    public void close() {
+      record();
+    }
+
+    private void record() {
+      if (recorded) {
+        return;
+      }
+      recorded = true;
+      if (latency) {
+        queryLatency.record(System.nanoTime() - startNanos);
+      }
+      if (size) {
+        resultSize.record(returned);
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package net.intelie.challenges;
+
+import java.util.Map;
+
+/**
+ * The metrics of an {@link EventStoreMemory} as seen by JMX, see
+ * {@link EventStoreMetrics#register(String)}. The counters are
+ * cumulative, a monitoring tool derives the rates from two reads.
+ */
+public interface EventStoreMetricsMXBean {
+
+    /**
+     * @return the events inserted while the inserts were metered.
+     */
+    long getInserts();
+
+    /**
+     * @return for each type, the events inserted since the type was
+     * created, or since its last removeAll; always counted.
+     */
+    Map<String, Long> getInsertsPerType();
+
+    /**
+     * @return for each type, an estimate of the heap held by its events.
+     */
+    Map<String, Long> getEstimatedBytesPerType();
+
+    long getEstimatedBytes();
+
+    /**
+     * @return the queries metered, recorded when their iterator reaches
+     * the end or is closed.
+     */
+    long getQueries();
+
+    long getQueryLatencyP50Nanos();
+
+    long getQueryLatencyP99Nanos();
+
+    long getQueryLatencyP999Nanos();
+
+    long getQueryLatencyMaxNanos();
+
+    long getResultSizeP50();
+
+    long getResultSizeP99();
+
+    long getResultSizeMax();
+
+    boolean isInsertsEnabled();
+
+    void setInsertsEnabled(boolean enabled);
+
+    boolean isQueryLatencyEnabled();
+
+    void setQueryLatencyEnabled(boolean enabled);
+
+    boolean isResultSizeEnabled();
+
+    void setResultSizeEnabled(boolean enabled);
+}
@@ -0,0 +1,212 @@
+package net.intelie.challenges;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class EventStoreOffHeap implements EventStore, AutoCloseable {
+
+  // An EventStore that keeps the timestamps outside of the heap. Each type has a TimestampColumn
+  // whose chunks are DirectTimestampChunk, 32KB direct ByteBuffers, so the heap only holds a couple
+  // of small objects per 4096 events and the GarbageCollector pauses do not grow with the
+  // retention. The iterators read the longs straight from the buffers, nothing is copied, and the
+  // Event is built only when EventIterator.current is called, using the String kept as key of the
+  // ConcurrentHashMap, so a type is stored once whatever the number of its Event.
+  // Direct memory is not released by the GarbageCollector in a timely way, so the store frees it
+  // explicitly: removeAll releases the chunks of the type and close releases everything. The
+  // chunks are freed under the write lock of their column, an open iterator over a released
+  // column simply reaches its end instead of reading freed memory. After close every operation
+  // throws IllegalStateException.
+  // The cost Big-O of operations is the same of EventStoreColumnar.
+
+  private final ConcurrentHashMap<String, TimestampColumn> columns = new ConcurrentHashMap<>();
+  private final TypeDictionary types = new TypeDictionary();
+  private final TypeRegistry registry = new TypeRegistry();
+  private final AtomicLong allocatedBytes = new AtomicLong();
+  private volatile boolean closed;
+
+  @Override
+  public void insert(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    // a column released by a concurrent removeAll refuses the timestamp, then the insert goes to
+    // the new column of the type, as if it happened after the removeAll
+    while (!columnOf(event.type()).add(event.timestamp())) {
+      checkOpen();
+    }
+  }
+
+  @Override
+  public TypeHandle handle(String type) {
+    checkOpen();
+
+    return registry.handle(type);
+  }
+
+  @Override
+  public void insert(TypeHandle type, long timestamp) {
+    registry.check(type);
+
+    // as insert of an Event, a column released by a concurrent removeAll refuses the timestamp
+    while (!columnOf(type.type()).add(timestamp)) {
+      checkOpen();
+    }
+  }
+
+  @Override
+  public void insertAll(Collection<? extends Event> events) {
+    EventStoreArguments.checkEvents(events);
+
+    for (Map.Entry<String, List<Event>> group : EventBatch.sortedByType(events).entrySet()) {
+      long[] timestamps = EventBatch.timestamps(group.getValue());
+      while (!columnOf(group.getKey()).addAll(timestamps)) {
+        checkOpen();
+      }
+    }
+  }
+
+  @Override
+  public void removeAll(String type) {
+    EventStoreArguments.checkType(type);
+    checkOpen();
+
+    columns.computeIfPresent(type, (key, column) -> {
+      types.remove(key);
+      column.release();
+      return null;
+    });
+  }
+
+  @Override
+  public long removeRange(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? 0 : column.removeRange(startTime, endTime);
+  }
+
+  @Override
+  public long count(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? 0 : column.count(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong first(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? OptionalLong.empty() : column.first(startTime, endTime);
+  }
+
+  @Override
+  public OptionalLong last(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return column == null ? OptionalLong.empty() : column.last(startTime, endTime);
+  }
+
+  @Override
+  public NavigableSet<String> typesWithPrefix(String prefix) {
+    EventStoreArguments.checkPattern(prefix);
+    checkOpen();
+
+    return types.withPrefix(prefix);
+  }
+
+  @Override
+  public Stream<Event> stream(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return StreamSupport.stream(column == null
+        ? Spliterators.<Event>emptySpliterator()
+        : column.spliterator(startTime, endTime), false);
+  }
+
+  @Override
+  public EventIterator queryConfined(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    return new EventIteratorConfined(column == null
+        ? Collections.<Event>emptyIterator()
+        : column.confinedIterator(startTime, endTime));
+  }
+
+  @Override
+  public EventIterator query(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    if (column == null) {
+      return new EventIteratorColumnar(type, null);
+    }
+
+    return new EventIteratorColumnar(column.type(), column.cursor(startTime, endTime));
+  }
+
+  /**
+   * The direct memory currently held by the store, in bytes.
+   */
+  public long offHeapBytes() {
+    return allocatedBytes.get();
+  }
+
+  /**
+   * Frees all the off-heap memory of the store. The store can not be used afterwards.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    types.clear();
+    for (String type : columns.keySet()) {
+      TimestampColumn column = columns.remove(type);
+      if (column != null) {
+        column.release();
+      }
+    }
+  }
+
+  private TimestampColumn columnOf(String type) {
+    checkOpen();
+
+    TimestampColumn column = columns.get(type);
+    if (column == null) {
+      column = columns.computeIfAbsent(type, key -> {
+        types.add(key);
+        return new TimestampColumn(key, () -> new DirectTimestampChunk(allocatedBytes));
+      });
+    }
+
+    // close may have released the columns between the check and the lookup
+    if (closed) {
+      column.release();
+      checkOpen();
+    }
+    return column;
+  }
+
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("the store is closed");
+  }
+}
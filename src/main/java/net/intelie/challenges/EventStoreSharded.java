@@ -0,0 +1,321 @@
+package net.intelie.challenges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+public class EventStoreSharded implements EventStore, AutoCloseable {
+
+  // An EventStore spread over N independent sub-stores, the shards, each one with its own maps,
+  // locks and memory accounting (the metrics of an EventStoreMemory shard count its own types).
+  // A type lives in a single shard, chosen by its hash, so every operation on a type is routed to
+  // one shard and the types of different shards never meet. A hot type, declared when the store
+  // is built, is spread instead by slices of time of a fixed width: the slice i of the type goes
+  // to the shard (hash + i) mod N, so the inserts of a hot type rotate over the shards as the time
+  // advances and a window of at least N slices is read from every shard in parallel structures.
+  // The operations on a hot type fan out to the shards of the slices inside the window: queries
+  // merge them in timestamp order (see MergingEventIterator), counts add them up, first and last
+  // take the least and the greatest. The slices never overlap, so no Event is seen twice.
+  // The types of the prefix queries are the union of the types of the shards, copied at the call:
+  // the shards may be any store, even one that reloads its types from disk, so the store keeps no
+  // dictionary of its own to give a view of.
+  // The cost Big-O of operations is the one of the shards for a type, plus, for a hot type, the
+  // merge of s shards, O(log s) for each Event, s represents the shards of the window, at most N.
+
+  private final EventStore[] shards;
+  private final Map<String, Long> hotTypeSlices;
+  private final TypeRegistry registry = new TypeRegistry();
+
+  /**
+   * @param shards the number of EventStoreMemory shards.
+   * @throws IllegalArgumentException if the number of shards is not positive.
+   */
+  public EventStoreSharded(int shards) {
+    this(shards, EventStoreMemory::new, Collections.<String, Long>emptyMap());
+  }
+
+  /**
+   * @param shards        the number of shards.
+   * @param factory       creates each shard.
+   * @param hotTypeSlices the hot types, each one with the width, in the unit of the timestamps, of
+   *                      the slices of time spread over the shards.
+   * @throws IllegalArgumentException if the number of shards is not positive, an argument is null,
+   *                                  a hot type is blank or its width is not positive.
+   */
+  public EventStoreSharded(int shards, Supplier<? extends EventStore> factory,
+      Map<String, Long> hotTypeSlices) {
+    if (shards <= 0 || factory == null || hotTypeSlices == null)
+      throw new IllegalArgumentException();
+
+    for (Map.Entry<String, Long> hotType : hotTypeSlices.entrySet()) {
+      EventStoreArguments.checkType(hotType.getKey());
+      if (hotType.getValue() == null || hotType.getValue() <= 0)
+        throw new IllegalArgumentException();
+    }
+
+    this.shards = new EventStore[shards];
+    for (int i = 0; i < shards; i++) {
+      this.shards[i] = factory.get();
+    }
+    this.hotTypeSlices = new HashMap<>(hotTypeSlices);
+  }
+
+  public int shardCount() {
+    return shards.length;
+  }
+
+  /**
+   * The shard of the index, for its own accounting; its Event must not be changed through it.
+   */
+  public EventStore shard(int index) {
+    return shards[index];
+  }
+
+  @Override
+  public void insert(Event event) {
+    EventStoreArguments.checkEvent(event);
+
+    shardOf(event.type(), event.timestamp()).insert(event);
+  }
+
+  @Override
+  public TypeHandle handle(String type) {
+    return registry.handle(type);
+  }
+
+  @Override
+  public void insert(TypeHandle type, long timestamp) {
+    registry.check(type);
+
+    shardOf(type.type(), timestamp).insert(new Event(type.type(), timestamp));
+  }
+
+  @Override
+  public void insertAll(Collection<? extends Event> events) {
+    EventStoreArguments.checkEvents(events);
+
+    List<List<Event>> batches = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      batches.add(new ArrayList<>());
+    }
+    for (Event event : events) {
+      batches.get(indexOf(event.type(), event.timestamp())).add(event);
+    }
+    for (int i = 0; i < shards.length; i++) {
+      if (!batches.get(i).isEmpty()) {
+        shards[i].insertAll(batches.get(i));
+      }
+    }
+  }
+
+  @Override
+  public void removeAll(String type) {
+    EventStoreArguments.checkType(type);
+
+    for (EventStore shard : shardsOf(type, 0, Long.MAX_VALUE)) {
+      shard.removeAll(type);
+    }
+  }
+
+  @Override
+  public long removeRange(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    long removed = 0;
+    for (EventStore shard : shardsOf(type, startTime, endTime)) {
+      removed += shard.removeRange(type, startTime, endTime);
+    }
+    return removed;
+  }
+
+  @Override
+  public long count(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    long count = 0;
+    for (EventStore shard : shardsOf(type, startTime, endTime)) {
+      count += shard.count(type, startTime, endTime);
+    }
+    return count;
+  }
+
+  @Override
+  public OptionalLong first(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    OptionalLong first = OptionalLong.empty();
+    for (EventStore shard : shardsOf(type, startTime, endTime)) {
+      OptionalLong candidate = shard.first(type, startTime, endTime);
+      if (candidate.isPresent()
+          && (!first.isPresent() || candidate.getAsLong() < first.getAsLong())) {
+        first = candidate;
+      }
+    }
+    return first;
+  }
+
+  @Override
+  public OptionalLong last(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    OptionalLong last = OptionalLong.empty();
+    for (EventStore shard : shardsOf(type, startTime, endTime)) {
+      OptionalLong candidate = shard.last(type, startTime, endTime);
+      if (candidate.isPresent()
+          && (!last.isPresent() || candidate.getAsLong() > last.getAsLong())) {
+        last = candidate;
+      }
+    }
+    return last;
+  }
+
+  @Override
+  public long[] histogram(String type, long startTime, long endTime, int buckets) {
+    EventStoreArguments.checkHistogram(type, startTime, endTime, buckets);
+
+    if (!hotTypeSlices.containsKey(type)) {
+      return shardOf(type, startTime).histogram(type, startTime, endTime, buckets);
+    }
+    return EventStore.super.histogram(type, startTime, endTime, buckets);
+  }
+
+  @Override
+  public <A, R> R scan(String type, long startTime, long endTime,
+      Collector<? super Event, A, R> collector) {
+    EventStoreArguments.checkScan(type, startTime, endTime, collector);
+
+    if (!hotTypeSlices.containsKey(type)) {
+      return shardOf(type, startTime).scan(type, startTime, endTime, collector);
+    }
+    return EventStore.super.scan(type, startTime, endTime, collector);
+  }
+
+  @Override
+  public Stream<Event> stream(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    if (!hotTypeSlices.containsKey(type)) {
+      return shardOf(type, startTime).stream(type, startTime, endTime);
+    }
+    return EventStore.super.stream(type, startTime, endTime);
+  }
+
+  /**
+   * A read-only snapshot of the types of the shards that start with the prefix, in order; the
+   * types inserted or removed after the call are not seen by it.
+   */
+  @Override
+  public NavigableSet<String> typesWithPrefix(String prefix) {
+    EventStoreArguments.checkPattern(prefix);
+
+    TreeSet<String> types = new TreeSet<>();
+    for (EventStore shard : shards) {
+      types.addAll(shard.typesWithPrefix(prefix));
+    }
+    return Collections.unmodifiableNavigableSet(types);
+  }
+
+  @Override
+  public EventIterator query(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    List<EventStore> involved = shardsOf(type, startTime, endTime);
+    if (involved.size() == 1) {
+      return involved.get(0).query(type, startTime, endTime);
+    }
+
+    List<EventIterator> sources = new ArrayList<>(involved.size());
+    for (EventStore shard : involved) {
+      sources.add(shard.query(type, startTime, endTime));
+    }
+    return new MergingEventIterator(sources);
+  }
+
+  @Override
+  public EventIterator queryConfined(String type, long startTime, long endTime) {
+    EventStoreArguments.checkRange(type, startTime, endTime);
+
+    List<EventStore> involved = shardsOf(type, startTime, endTime);
+    if (involved.size() == 1) {
+      return involved.get(0).queryConfined(type, startTime, endTime);
+    }
+
+    List<EventIterator> sources = new ArrayList<>(involved.size());
+    for (EventStore shard : involved) {
+      sources.add(shard.queryConfined(type, startTime, endTime));
+    }
+    return new MergingEventIterator(sources);
+  }
+
+  /**
+   * Closes the shards that are AutoCloseable, the first failure is thrown after every shard was
+   * closed.
+   */
+  @Override
+  public void close() throws Exception {
+    Exception failure = null;
+    for (EventStore shard : shards) {
+      if (shard instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) shard).close();
+        } catch (Exception e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private EventStore shardOf(String type, long timestamp) {
+    return shards[indexOf(type, timestamp)];
+  }
+
+  private int indexOf(String type, long timestamp) {
+    int hash = spread(type);
+    Long slice = hotTypeSlices.get(type);
+    if (slice == null) {
+      return Math.floorMod(hash, shards.length);
+    }
+    return (int) Math.floorMod(hash + Math.floorDiv(timestamp, slice), (long) shards.length);
+  }
+
+  // the shards of the slices of the window, in the order of the slices
+  private List<EventStore> shardsOf(String type, long startTime, long endTime) {
+    Long slice = hotTypeSlices.get(type);
+    if (slice == null) {
+      return Collections.singletonList(shards[Math.floorMod(spread(type), shards.length)]);
+    }
+
+    long firstSlice = Math.floorDiv(startTime, slice);
+    long lastSlice = Math.floorDiv(endTime, slice);
+    List<EventStore> involved = new ArrayList<>();
+    if (lastSlice - firstSlice >= shards.length - 1) {
+      Collections.addAll(involved, shards);
+    } else {
+      for (long i = firstSlice; i <= lastSlice; i++) {
+        involved.add(shardOf(type, i * slice));
+      }
+    }
+    return involved;
+  }
+
+  private static int spread(String type) {
+    int hash = type == null ? 0 : type.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+}
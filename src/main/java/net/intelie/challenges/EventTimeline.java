@@ -0,0 +1,839 @@
+package net.intelie.challenges;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+class EventTimeline {
+
+  // All the Event of one type, kept ordered by timestamp. The time is cut in partitions of a fixed
+  // width (a minute by default), each partition is a ConcurrentSkipListMap of its own Event and
+  // the partitions are kept in another ConcurrentSkipListMap by their start. Both are lock-free
+  // and tolerate out-of-order arrivals, so an Event with an old timestamp is simply linked in its
+  // place instead of forcing a re-sort of the whole type.
+  // Two Event may share the same timestamp, so the key is the pair (timestamp, sequence), where the
+  // sequence is taken from a per-type counter. This keeps the events of the same timestamp in
+  // insertion order and makes every key unique.
+  // The partitions are the unit of reclaim: dropping the old Event of a type is the removal of a
+  // few entries of the partition map, the skip lists of the dropped partitions are left to the
+  // GarbageCollector at once instead of being unlinked Event by Event. Each partition counts its
+  // Event, in total and in SLOTS slots of equal width, so the number of Event of a window is
+  // known without walking it, except for the two slots on its edges.
+  // A partition is never removed because it became empty, only dropped on purpose: an insert that
+  // found the partition just before it was dropped is lost with it, as if it happened before the
+  // drop, which is the expected result for a window that is being discarded.
+  // The cost Big-O of operations is:
+  // add: O(log n) for the Event that fall in the open partition, the newest one written, which is
+  // kept at hand so the appends in time order skip the search of the partition map; O(log p +
+  // log n) for the others, p represents the number of partitions, n the Event of the partition;
+  // the Event are linked in the skip lists, no array of the type ever grows or is copied;
+  // range: O(log p + log n) to find the first Event of the window, then O(1) for each Event
+  // visited, so a query costs O(log p + log n + k), k represents the number of Event inside the
+  // window;
+  // count: O(log p) plus O(1) for each partition inside the window, which answers with its count,
+  // plus O(SLOTS) for the two partitions on the edges, where only the keys of the two slots on the
+  // edges of the window are walked, through a PartitionCursor once the partition holds a block;
+  // first, last: O(log p + log n), plus O(log n) for each empty partition skipped;
+  // dropBefore, trimTo: O(log p) for each partition dropped, whatever its number of Event;
+  // removeRange: O(log p) for each partition inside the range, plus O(log n + k) for the two
+  // partitions on its edges, k represents the number of Event removed from them;
+  // Each partition also counts its removals, so an iterator that read an entry ahead checks it is
+  // still there only when a removal happened in between: an open iterator never returns an Event
+  // removed before its call to next, and the check costs nothing while nothing is removed.
+  // A compaction seals the old partitions (sealBefore): the Event of the skip list of a partition
+  // move to an immutable SealedBlock, a few bytes per Event, and the skip list is left with the
+  // late arrivals only, which the next compaction seals in turn, together with the block. Every
+  // read of a partition goes through a PartitionCursor, which merges the block with the skip
+  // list; the open partition, where the appends go, is never sealed.
+  // seal: O(n) for each partition sealed, the block is encoded off the insert path, inserts into
+  // the partition go on meanwhile and only its removals wait for it;
+
+  static final long DEFAULT_PARTITION_WIDTH = 60_000;
+
+  private final long partitionWidth;
+  private final ConcurrentSkipListMap<Long, Partition> partitions = new ConcurrentSkipListMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  // the newest partition an Event was added to, where the Event arriving in order go
+  private volatile Partition open;
+  // set once removeAll took the timeline out of its store, the TypeHandle that kept it resolve
+  // their type again
+  volatile boolean removed;
+
+  EventTimeline() {
+    this(DEFAULT_PARTITION_WIDTH);
+  }
+
+  EventTimeline(long partitionWidth) {
+    this.partitionWidth = partitionWidth;
+  }
+
+  void add(Event event) {
+    long timestamp = event.timestamp();
+    Partition partition = open;
+    if (partition == null || partition.dropped || !partition.covers(timestamp)) {
+      partition = partitionOf(timestamp);
+      openIfNewer(partition);
+    }
+    partition.put(new Key(timestamp, sequence.getAndIncrement()), event);
+  }
+
+  /**
+   * Adds a batch of Event of this type, sorted by timestamp. The sequences of the whole batch are
+   * reserved at once and the puts happen in key order, each one next to the previous in the skip
+   * list, which keeps the nodes visited by the searches in cache.
+   */
+  void addAll(List<Event> sortedEvents) {
+    long first = sequence.getAndAdd(sortedEvents.size());
+    Partition partition = null;
+    for (int i = 0; i < sortedEvents.size(); i++) {
+      Event event = sortedEvents.get(i);
+      if (partition == null || !partition.covers(event.timestamp())) {
+        partition = partitionOf(event.timestamp());
+      }
+      partition.put(new Key(event.timestamp(), first + i), event);
+    }
+    if (partition != null) {
+      openIfNewer(partition);
+    }
+  }
+
+  long partitionWidth() {
+    return partitionWidth;
+  }
+
+  /**
+   * Iterator over the Event between startTime and endTime, both inclusive, ordered by timestamp.
+   * Its remove deletes the Event from the timeline.
+   */
+  Iterator<Event> range(long startTime, long endTime) {
+    return new RangeIterator(startTime, endTime);
+  }
+
+  /**
+   * Spliterator over the Event between startTime and endTime, both inclusive, ordered by
+   * timestamp, see EventSpliterator.
+   */
+  Spliterator<Event> spliterator(long startTime, long endTime) {
+    List<Partition> between = partitionsBetween(startTime, endTime);
+    return new EventSpliterator(between, 0, between.size(), startTime, endTime);
+  }
+
+  /**
+   * Number of Event added since the timeline was created, the sequence counts them for free.
+   */
+  long inserted() {
+    return sequence.get();
+  }
+
+  /**
+   * Seals the partitions whose Event are all older than the timestamp, except the open one, see
+   * Partition.seal.
+   *
+   * @return the number of Event sealed.
+   */
+  long sealBefore(long timestamp) {
+    long sealed = 0;
+    for (Partition partition : partitions.headMap(startOf(timestamp)).values()) {
+      if (partition != open) {
+        sealed += partition.seal();
+      }
+    }
+    return sealed;
+  }
+
+  /**
+   * Heap taken by the Event of the timeline: bytesPerEvent for each Event of the skip lists, plus
+   * the size of the sealed blocks.
+   */
+  long estimatedBytes(long bytesPerEvent) {
+    long bytes = 0;
+    for (Partition partition : partitions.values()) {
+      SealedBlock block = partition.sealed;
+      long linked = partition.count.sum() - (block == null ? 0 : block.live());
+      bytes += Math.max(0, linked) * bytesPerEvent + (block == null ? 0 : block.bytes());
+    }
+    return bytes;
+  }
+
+  /**
+   * Number of Event of the timeline, exact when there is no concurrent change.
+   */
+  long size() {
+    long size = 0;
+    for (Partition partition : partitions.values()) {
+      size += partition.count.sum();
+    }
+    return size;
+  }
+
+  /**
+   * Number of Event between startTime and endTime, both inclusive.
+   */
+  long count(long startTime, long endTime) {
+    long count = 0;
+    for (Partition partition : partitionsOf(startTime, endTime).values()) {
+      count += partition.count(startTime, endTime);
+    }
+    return count;
+  }
+
+  /**
+   * The partitions that intersect the window, in time order, as they are now.
+   */
+  List<Partition> partitionsBetween(long startTime, long endTime) {
+    return new ArrayList<>(partitionsOf(startTime, endTime).values());
+  }
+
+  /**
+   * The smallest timestamp between startTime and endTime, both inclusive.
+   */
+  OptionalLong first(long startTime, long endTime) {
+    for (Partition partition : partitionsOf(startTime, endTime).values()) {
+      OptionalLong first = partition.first(startTime, endTime);
+      if (first.isPresent()) {
+        return first;
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  /**
+   * The greatest timestamp between startTime and endTime, both inclusive.
+   */
+  OptionalLong last(long startTime, long endTime) {
+    for (Partition partition : partitionsOf(startTime, endTime).descendingMap().values()) {
+      OptionalLong last = partition.last(startTime, endTime);
+      if (last.isPresent()) {
+        return last;
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  /**
+   * Drops the partitions whose Event are all older than the timestamp.
+   *
+   * @return the number of Event dropped.
+   */
+  long dropBefore(long timestamp) {
+    long dropped = 0;
+    for (Partition partition : partitions.headMap(startOf(timestamp)).values()) {
+      dropped += drop(partition);
+    }
+    return dropped;
+  }
+
+  /**
+   * Drops the oldest partitions while the newer ones still hold at least maxEvents Event, so the
+   * timeline keeps between maxEvents and maxEvents plus the size of one partition.
+   *
+   * @return the number of Event dropped.
+   */
+  long trimTo(long maxEvents) {
+    long excess = size() - maxEvents;
+    long dropped = 0;
+    for (Partition partition : partitions.values()) {
+      long count = partition.count.sum();
+      if (count > excess - dropped) {
+        break;
+      }
+      dropped += drop(partition);
+    }
+    return dropped;
+  }
+
+  /**
+   * Removes the Event between startTime and endTime, both inclusive: the partitions inside the
+   * range are dropped whole, the Event of the partitions on its edges are removed one by one.
+   *
+   * @return the number of Event removed.
+   */
+  long removeRange(long startTime, long endTime) {
+    long removed = 0;
+    for (Partition partition : partitionsOf(startTime, endTime).values()) {
+      if (partition.isInside(startTime, endTime)) {
+        removed += drop(partition);
+      } else {
+        PartitionCursor cursor = new PartitionCursor(partition, startTime, endTime);
+        while (cursor.next()) {
+          if (partition.remove(cursor.key())) {
+            removed++;
+          }
+        }
+      }
+    }
+    return removed;
+  }
+
+  private long drop(Partition partition) {
+    if (!partitions.remove(partition.start, partition)) {
+      return 0;
+    }
+    partition.dropped = true;
+    return partition.count.sum();
+  }
+
+  // the partitions that intersect the window
+  private ConcurrentNavigableMap<Long, Partition> partitionsOf(long startTime, long endTime) {
+    return partitions.subMap(startOf(startTime), true, startOf(endTime), true);
+  }
+
+  private Partition partitionOf(long timestamp) {
+    long start = startOf(timestamp);
+    Partition partition = partitions.get(start);
+    if (partition == null) {
+      partition = partitions.computeIfAbsent(start, key -> new Partition(key, partitionWidth));
+    }
+    return partition;
+  }
+
+  // a late Event never moves the open partition back, a dropped one is always replaced; two adds
+  // racing here may leave either partition open, the next add corrects it
+  private void openIfNewer(Partition partition) {
+    Partition current = open;
+    if (current == null || current.dropped || partition.start > current.start) {
+      open = partition;
+    }
+  }
+
+  private long startOf(long timestamp) {
+    return Math.floorDiv(timestamp, partitionWidth) * partitionWidth;
+  }
+
+  // the last timestamp of the width that starts at first, saturated at Long.MAX_VALUE
+  private static long lastOf(long first, long width) {
+    return first > Long.MAX_VALUE - (width - 1) ? Long.MAX_VALUE : first + (width - 1);
+  }
+
+  static final class Partition {
+    static final int SLOTS = 64;
+
+    final long start;
+    final long width;
+    final long slotWidth;
+    final ConcurrentSkipListMap<Key, Event> events = new ConcurrentSkipListMap<>();
+    final LongAdder count = new LongAdder();
+    final AtomicLongArray slotCounts = new AtomicLongArray(SLOTS);
+    // incremented after each removal, see PartitionCursor
+    final AtomicLong removals = new AtomicLong();
+    // the Event sealed by the last compaction of the partition, replaced by the next one
+    volatile SealedBlock sealed;
+    // set once the partition left the timeline, the open iterators stop reading it
+    volatile boolean dropped;
+
+    Partition(long start, long width) {
+      this.start = start;
+      this.width = width;
+      this.slotWidth = (width + SLOTS - 1) / SLOTS;
+    }
+
+    boolean covers(long timestamp) {
+      return timestamp - start >= 0 && timestamp - start < width;
+    }
+
+    // whether the whole partition is inside the window
+    boolean isInside(long startTime, long endTime) {
+      return startTime <= start && endTime >= end();
+    }
+
+    void put(Key key, Event event) {
+      events.put(key, event);
+      count.increment();
+      slotCounts.incrementAndGet(slotOf(key.timestamp));
+    }
+
+    // the count only moves when this call is the one that unlinked, or marked, the Event; it
+    // locks the partition so it never runs in the middle of a seal
+    synchronized boolean remove(Key key) {
+      if (events.remove(key) == null) {
+        SealedBlock block = sealed;
+        if (block == null || !block.remove(key.timestamp, key.sequence)) {
+          return false;
+        }
+      }
+      count.decrement();
+      slotCounts.decrementAndGet(slotOf(key.timestamp));
+      removals.incrementAndGet();
+      return true;
+    }
+
+    int slotOf(long timestamp) {
+      return (int) ((timestamp - start) / slotWidth);
+    }
+
+    // the last timestamp the partition covers, Long.MAX_VALUE for the one that goes past it
+    long end() {
+      return lastOf(start, width);
+    }
+
+    /**
+     * Upper bound of the number of Event between startTime and endTime, the sum of the slots they
+     * touch, nothing is walked.
+     */
+    long estimate(long startTime, long endTime) {
+      long estimate = 0;
+      for (int slot = slotOf(Math.max(startTime, start)); slot <= slotOf(Math.min(endTime, end()));
+          slot++) {
+        estimate += slotCounts.get(slot);
+      }
+      return estimate;
+    }
+
+    /**
+     * Number of Event of the partition between startTime and endTime, both inclusive. The slots
+     * inside the window answer with their count, on the others the shorter of the parts inside
+     * and outside the window is walked.
+     */
+    long count(long startTime, long endTime) {
+      if (isInside(startTime, endTime)) {
+        return count.sum();
+      }
+
+      long from = Math.max(startTime, start);
+      long to = Math.min(endTime, end());
+      long count = 0;
+      for (int slot = slotOf(from); slot <= slotOf(to); slot++) {
+        long slotStart = start + slot * slotWidth;
+        long slotEnd = lastOf(slotStart, slotWidth);
+        if (from <= slotStart && slotEnd <= to) {
+          count += slotCounts.get(slot);
+        } else if (2 * (Math.min(to, slotEnd) - Math.max(from, slotStart) + 1) <= slotWidth) {
+          count += walk(Math.max(from, slotStart), Math.min(to, slotEnd));
+        } else {
+          // most of the slot is inside the window, walking the part outside is shorter
+          count += slotCounts.get(slot);
+          count -= from > slotStart ? walk(slotStart, from - 1) : 0;
+          count -= to < slotEnd ? walk(to + 1, slotEnd) : 0;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * The smallest timestamp of the partition between startTime and endTime, both inclusive.
+     */
+    OptionalLong first(long startTime, long endTime) {
+      // the skip list is read before the block: a seal publishes its block before it unlinks the
+      // Event it moved, so an Event missing from the list is already in the block
+      Key key = events.ceilingKey(Key.lowest(startTime));
+      SealedBlock block = sealed;
+      OptionalLong first = block == null ? OptionalLong.empty() : block.first(startTime, endTime);
+      if (key != null && key.timestamp <= endTime
+          && (!first.isPresent() || key.timestamp < first.getAsLong())) {
+        return OptionalLong.of(key.timestamp);
+      }
+      return first;
+    }
+
+    /**
+     * The greatest timestamp of the partition between startTime and endTime, both inclusive.
+     */
+    OptionalLong last(long startTime, long endTime) {
+      Key key = events.floorKey(Key.highest(endTime));
+      SealedBlock block = sealed;
+      OptionalLong last = block == null ? OptionalLong.empty() : block.last(startTime, endTime);
+      if (key != null && key.timestamp >= startTime
+          && (!last.isPresent() || key.timestamp > last.getAsLong())) {
+        return OptionalLong.of(key.timestamp);
+      }
+      return last;
+    }
+
+    /**
+     * Moves the Event of the skip list to a new SealedBlock, together with the ones of the current
+     * block that were not removed, then unlinks them from the skip list. The new block is
+     * published before the Event are unlinked, so a reader finds each Event in the list, in the
+     * block, or in both for a moment, which the PartitionCursor tells apart by the key. The inserts
+     * that race with the seal stay in the list if the snapshot missed them. The removals wait for
+     * the seal, so none is lost between the snapshot and the unlinks.
+     *
+     * @return the number of Event moved out of the skip list.
+     */
+    synchronized long seal() {
+      if (dropped || events.isEmpty()) {
+        return 0;
+      }
+
+      // only the seal and the removals unlink from the list, both under this lock, so the
+      // snapshot holds at least the Event the list had when it started
+      List<Key> moved = new ArrayList<>(events.keySet());
+      SealedBlock block = sealed;
+      String type = block != null ? block.type : events.firstEntry().getValue().type();
+      int capacity = moved.size() + (block == null ? 0 : block.live());
+      long[] timestamps = new long[capacity];
+      long[] sequences = new long[capacity];
+      int size = 0;
+
+      SealedBlock.Cursor kept = block == null ? null : block.cursor(Long.MIN_VALUE, Long.MIN_VALUE);
+      boolean keptAhead = nextLive(block, kept);
+      for (Key key : moved) {
+        while (keptAhead && (kept.timestamp() < key.timestamp
+            || kept.timestamp() == key.timestamp && kept.sequence() < key.sequence)) {
+          timestamps[size] = kept.timestamp();
+          sequences[size++] = kept.sequence();
+          keptAhead = nextLive(block, kept);
+        }
+        timestamps[size] = key.timestamp;
+        sequences[size++] = key.sequence;
+      }
+      while (keptAhead) {
+        timestamps[size] = kept.timestamp();
+        sequences[size++] = kept.sequence();
+        keptAhead = nextLive(block, kept);
+      }
+
+      sealed = SealedBlock.of(type, timestamps, sequences, size);
+      for (Key key : moved) {
+        events.remove(key);
+      }
+      return moved.size();
+    }
+
+    // the Event of the slots walked by count. Without a block, the keys of the skip list; a seal
+    // publishes its block before it unlinks an Event, so a block still missing after the walk
+    // means no Event moved meanwhile. Otherwise a PartitionCursor, which counts once the Event
+    // found in both while a seal moves them.
+    private long walk(long startTime, long endTime) {
+      if (sealed == null) {
+        long count = events.subMap(Key.lowest(startTime), true, Key.highest(endTime), true).size();
+        if (sealed == null) {
+          return count;
+        }
+      }
+      long count = 0;
+      PartitionCursor cursor = new PartitionCursor(this, startTime, endTime);
+      while (cursor.next()) {
+        count++;
+      }
+      return count;
+    }
+
+    private static boolean nextLive(SealedBlock block, SealedBlock.Cursor cursor) {
+      if (cursor == null) {
+        return false;
+      }
+      while (cursor.next()) {
+        if (!block.isRemoved(cursor.index())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Walks the Event of one partition between startTime and endTime, both inclusive, merging its
+   * skip list with its sealed block, in key order. A key found in both, while a seal moves it, is
+   * returned once, with the Event of the list.
+   * The entry iterators of the skip list read one entry ahead, so the entry they return may have
+   * been removed since. The removals of the partition read before each step tell if a removal
+   * happened after the entry was read, only then the entry is looked up again. The keys of the
+   * block are checked against its removed bits as they are returned.
+   * The block is read again before each Event is returned: when a seal replaced it, the cursor
+   * positions itself again, in the new block and in the list, right after the last key it
+   * returned, so no Event moved by the seal is skipped nor returned twice. A dropped partition
+   * ends the walk.
+   */
+  static final class PartitionCursor {
+    private final Partition partition;
+    private final long startTime;
+    private final long endTime;
+    private SealedBlock block;
+    private SealedBlock.Cursor keys;
+    // keys holds a key of the window not returned yet
+    private boolean keysAhead;
+    private Iterator<Map.Entry<Key, Event>> entries;
+    private Map.Entry<Key, Event> entry;
+    // the removals of the partition before entry was read ahead, and before the next one was
+    private long entryRemovals;
+    private long readRemovals;
+    private boolean started;
+    private long timestamp;
+    private long sequence;
+    private Event event;
+
+    PartitionCursor(Partition partition, long startTime, long endTime) {
+      this.partition = partition;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      position(Key.lowest(startTime), true);
+    }
+
+    Partition partition() {
+      return partition;
+    }
+
+    /**
+     * Moves to the next Event of the window, false at its end.
+     */
+    boolean next() {
+      while (!partition.dropped) {
+        Event found = null;
+        long foundTimestamp = 0;
+        long foundSequence = 0;
+        if (entry != null && (!keysAhead
+            || compare(entry.getKey(), keys.timestamp(), keys.sequence()) <= 0)) {
+          Map.Entry<Key, Event> head = entry;
+          long removalsWhenRead = entryRemovals;
+          pullEntry();
+          if (removalsWhenRead == partition.removals.get()
+              || partition.events.containsKey(head.getKey())) {
+            found = head.getValue();
+            foundTimestamp = head.getKey().timestamp;
+            foundSequence = head.getKey().sequence;
+            // the same key in the block, being moved by a seal
+            if (keysAhead && compare(head.getKey(), keys.timestamp(), keys.sequence()) == 0) {
+              keysAhead = keys.next() && keys.timestamp() <= endTime;
+            }
+          }
+        } else if (keysAhead) {
+          if (!block.isRemoved(keys.index())) {
+            foundTimestamp = keys.timestamp();
+            foundSequence = keys.sequence();
+            found = new Event(block.type, foundTimestamp);
+          }
+          keysAhead = keys.next() && keys.timestamp() <= endTime;
+        } else if (block == partition.sealed) {
+          return false;
+        }
+
+        if (block != partition.sealed) {
+          if (started) {
+            position(new Key(timestamp, sequence), false);
+          } else {
+            position(Key.lowest(startTime), true);
+          }
+        } else if (found != null) {
+          started = true;
+          timestamp = foundTimestamp;
+          sequence = foundSequence;
+          event = found;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    Event event() {
+      return event;
+    }
+
+    Key key() {
+      return new Key(timestamp, sequence);
+    }
+
+    private void position(Key from, boolean inclusive) {
+      block = partition.sealed;
+      readRemovals = partition.removals.get();
+      entries = partition.events.subMap(from, inclusive, Key.highest(endTime), true)
+          .entrySet().iterator();
+      pullEntry();
+      keys = block == null
+          ? null : block.cursor(from.timestamp, inclusive ? from.sequence : from.sequence + 1);
+      keysAhead = keys != null && keys.next() && keys.timestamp() <= endTime;
+    }
+
+    private void pullEntry() {
+      if (entries.hasNext()) {
+        long current = partition.removals.get();
+        entry = entries.next();
+        entryRemovals = readRemovals;
+        readRemovals = current;
+      } else {
+        entry = null;
+      }
+    }
+
+    private static int compare(Key key, long timestamp, long sequence) {
+      int result = Long.compare(key.timestamp, timestamp);
+      return result != 0 ? result : Long.compare(key.sequence, sequence);
+    }
+  }
+
+  /**
+   * Walks the partitions that intersect the window one after the other, and inside each one the
+   * Event of the window with a PartitionCursor. A partition dropped while the iterator is on it
+   * ends its part of the result.
+   */
+  private final class RangeIterator implements Iterator<Event> {
+    private final long startTime;
+    private final long endTime;
+    private final Iterator<Partition> nextPartitions;
+    private PartitionCursor cursor;
+    // the cursor is on an Event not returned yet
+    private boolean ready;
+    private Partition lastPartition;
+    private Key lastKey;
+
+    RangeIterator(long startTime, long endTime) {
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.nextPartitions = partitionsOf(startTime, endTime).values().iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!ready) {
+        if (cursor != null && cursor.next()) {
+          ready = true;
+        } else if (nextPartitions.hasNext()) {
+          cursor = new PartitionCursor(nextPartitions.next(), startTime, endTime);
+        } else {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public Event next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      ready = false;
+      lastPartition = cursor.partition();
+      lastKey = cursor.key();
+      return cursor.event();
+    }
+
+    @Override
+    public void remove() {
+      if (lastKey == null) {
+        throw new IllegalStateException();
+      }
+      lastPartition.remove(lastKey);
+      lastKey = null;
+    }
+  }
+
+  /**
+   * Walks the partitions that intersect the window with a PartitionCursor each, which takes no
+   * lock. Until it starts walking, it splits the run of partitions in halves and, when a single
+   * partition is left, the window in halves of time, guided by the counts of the slots, so a
+   * parallel stream divides the window as ParallelScan does. The size is estimated from the counts
+   * of the slots, it is not exact because the timeline may change meanwhile. The partitions dropped
+   * meanwhile are skipped.
+   */
+  static final class EventSpliterator implements Spliterator<Event> {
+    // below this number of Event a partition is not split
+    private static final long MIN_SPLIT = 4096;
+
+    private final List<Partition> partitions;
+    private int next;
+    private final int end;
+    private long startTime;
+    private final long endTime;
+    private PartitionCursor current;
+
+    EventSpliterator(List<Partition> partitions, int next, int end, long startTime, long endTime) {
+      this.partitions = partitions;
+      this.next = next;
+      this.end = end;
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Event> action) {
+      do {
+        if (current != null && current.next()) {
+          action.accept(current.event());
+          return true;
+        }
+      } while (advancePartition());
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Event> action) {
+      do {
+        while (current != null && current.next()) {
+          action.accept(current.event());
+        }
+      } while (advancePartition());
+    }
+
+    @Override
+    public Spliterator<Event> trySplit() {
+      if (current != null || next == end) {
+        return null;
+      }
+      if (end - next > 1) {
+        int middle = (next + end) >>> 1;
+        Spliterator<Event> prefix =
+            new EventSpliterator(partitions, next, middle, startTime, endTime);
+        next = middle;
+        return prefix;
+      }
+
+      // a single partition, split in halves of time while it has many Event
+      Partition last = partitions.get(next);
+      long from = Math.max(startTime, last.start);
+      long to = Math.min(endTime, last.end());
+      if (to - from < last.slotWidth || last.estimate(from, to) < MIN_SPLIT) {
+        return null;
+      }
+      long middle = from + (to - from) / 2;
+      Spliterator<Event> prefix = new EventSpliterator(partitions, next, end, from, middle);
+      startTime = middle + 1;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      long estimate = current != null ? current.partition().estimate(startTime, endTime) : 0;
+      for (int i = next; i < end && estimate < Long.MAX_VALUE / 2; i++) {
+        estimate += partitions.get(i).estimate(startTime, endTime);
+      }
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | NONNULL | CONCURRENT;
+    }
+
+    private boolean advancePartition() {
+      if (next == end) {
+        current = null;
+        return false;
+      }
+      current = new PartitionCursor(partitions.get(next++), startTime, endTime);
+      return true;
+    }
+  }
+
+  static final class Key implements Comparable<Key> {
+    private final long timestamp;
+    private final long sequence;
+
+    Key(long timestamp, long sequence) {
+      this.timestamp = timestamp;
+      this.sequence = sequence;
+    }
+
+    static Key lowest(long timestamp) {
+      return new Key(timestamp, Long.MIN_VALUE);
+    }
+
+    static Key highest(long timestamp) {
+      return new Key(timestamp, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      int result = Long.compare(timestamp, other.timestamp);
+      return result != 0 ? result : Long.compare(sequence, other.sequence);
+    }
+  }
+}
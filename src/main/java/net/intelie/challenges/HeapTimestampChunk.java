@@ -0,0 +1,27 @@
+package net.intelie.challenges;
+
+final class HeapTimestampChunk extends TimestampChunk {
+
+  // The chunk of EventStoreColumnar, a plain long[] released by the GarbageCollector.
+
+  private final long[] values = new long[CAPACITY];
+
+  HeapTimestampChunk() {
+    super(CAPACITY);
+  }
+
+  @Override
+  long get(int index) {
+    return values[index];
+  }
+
+  @Override
+  void set(int index, long timestamp) {
+    values[index] = timestamp;
+  }
+
+  @Override
+  void move(int from, int to, int length) {
+    System.arraycopy(values, from, values, to, length);
+  }
+}
@@ -0,0 +1,115 @@
+package net.intelie.challenges;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class MappedTimestampChunk extends TimestampChunk {
+
+  // The chunk of EventStoreMapped, a segment file mapped in memory. The file has a header with the
+  // number of timestamps followed by CAPACITY little-endian longs, so opening the store is only a
+  // matter of mapping the files and reading the headers, nothing is replayed. The pages are read
+  // by the OS when the iterators touch them and written back by the OS (or by flush).
+  // The capacity is larger than the one of the chunks kept in memory so a billion events fit in a
+  // few thousand files and mappings.
+
+  static final int CAPACITY = 128 * 1024;
+  static final int HEADER_BYTES = Long.BYTES;
+  static final long FILE_BYTES = HEADER_BYTES + (long) CAPACITY * Long.BYTES;
+
+  private final Path file;
+  private final MappedByteBuffer buffer;
+  private final LongBuffer values;
+
+  private MappedTimestampChunk(Path file, MappedByteBuffer buffer) {
+    super(CAPACITY);
+    this.file = file;
+    this.buffer = buffer;
+    this.size = buffer.getInt(0);
+    ByteBuffer body = buffer.duplicate();
+    // through Buffer, so the code compiled by a newer JDK still runs on Java 8
+    ((Buffer) body).position(HEADER_BYTES);
+    this.values = body.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+  }
+
+  /**
+   * Creates and maps a new empty segment file.
+   */
+  static MappedTimestampChunk create(Path file) {
+    return map(file, StandardOpenOption.CREATE_NEW);
+  }
+
+  /**
+   * Maps an existing segment file.
+   */
+  static MappedTimestampChunk open(Path file) {
+    return map(file);
+  }
+
+  private static MappedTimestampChunk map(Path file, StandardOpenOption... extraOptions) {
+    StandardOpenOption[] options = new StandardOpenOption[extraOptions.length + 2];
+    options[0] = StandardOpenOption.READ;
+    options[1] = StandardOpenOption.WRITE;
+    System.arraycopy(extraOptions, 0, options, 2, extraOptions.length);
+
+    // the mapping stays valid after the channel is closed, so no file descriptor is kept
+    try (FileChannel channel = FileChannel.open(file, options)) {
+      return new MappedTimestampChunk(file, channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          FILE_BYTES));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  Path file() {
+    return file;
+  }
+
+  @Override
+  long get(int index) {
+    return values.get(index);
+  }
+
+  @Override
+  void set(int index, long timestamp) {
+    values.put(index, timestamp);
+  }
+
+  @Override
+  void move(int from, int to, int length) {
+    DirectTimestampChunk.move(values, from, to, length);
+  }
+
+  @Override
+  void sizeChanged() {
+    buffer.putInt(0, size);
+  }
+
+  @Override
+  void flush() {
+    buffer.force();
+  }
+
+  @Override
+  void release() {
+    DirectMemory.free(buffer);
+  }
+
+  @Override
+  void discard() {
+    release();
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
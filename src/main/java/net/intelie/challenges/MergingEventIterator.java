@@ -0,0 +1,114 @@
+package net.intelie.challenges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class MergingEventIterator implements EventIterator {
+
+  // Merges iterators that are each ordered by timestamp into one iterator ordered by timestamp,
+  // the result of a query over many types. It is a k-way merge over a PriorityQueue holding one
+  // entry per source that still has Event, keyed by the timestamp of the current Event of the
+  // source; the Event of the same timestamp come in the order of the sources. Nothing is copied:
+  // each moveNext advances the source of the last Event and puts it back in the heap, so the
+  // iterator holds O(k) memory whatever the size of the result, k represents the number of
+  // sources.
+  // The sources are positioned on their first Event by the first moveNext, so creating the
+  // iterator costs nothing. remove goes to the source of the current Event, close closes every
+  // source.
+  // The cost Big-O of operations is:
+  // first moveNext: O(k log k);
+  // moveNext: O(log k) plus the moveNext of the source;
+
+  private final List<EventIterator> sources;
+  private final PriorityQueue<Source> heap;
+  private boolean started;
+  private Source current;
+
+  /**
+   * @param sources iterators ordered by timestamp, the merge owns them from now on.
+   */
+  public MergingEventIterator(List<? extends EventIterator> sources) {
+    this.sources = new ArrayList<>(sources);
+    this.heap = new PriorityQueue<>(Math.max(1, sources.size()));
+  }
+
+  @Override
+  public synchronized boolean moveNext() {
+    if (!started) {
+      started = true;
+      for (int i = 0; i < sources.size(); i++) {
+        EventIterator source = sources.get(i);
+        if (source.moveNext()) {
+          heap.add(new Source(source, i));
+        }
+      }
+    } else if (current != null && current.iterator.moveNext()) {
+      current.refresh();
+      heap.add(current);
+    }
+
+    current = heap.poll();
+    return current != null;
+  }
+
+  @Override
+  public synchronized Event current() {
+    if (current == null)
+      throw new IllegalStateException();
+
+    return current.iterator.current();
+  }
+
+  @Override
+  public synchronized void remove() {
+    if (current == null)
+      throw new IllegalStateException();
+
+    current.iterator.remove();
+  }
+
+  @Override
+  public synchronized void close() throws Exception {
+    Exception failure = null;
+    for (EventIterator source : sources) {
+      try {
+        source.close();
+      } catch (Exception e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    heap.clear();
+    current = null;
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static final class Source implements Comparable<Source> {
+    private final EventIterator iterator;
+    private final int order;
+    private long timestamp;
+
+    Source(EventIterator iterator, int order) {
+      this.iterator = iterator;
+      this.order = order;
+      refresh();
+    }
+
+    void refresh() {
+      timestamp = iterator.current().timestamp();
+    }
+
+    @Override
+    public int compareTo(Source other) {
+      int result = Long.compare(timestamp, other.timestamp);
+      return result != 0 ? result : Integer.compare(order, other.order);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package net.intelie.challenges;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
+
+final class ParallelScan<A> extends RecursiveTask<A> {
+
+  // The fork/join task of EventStoreMemory.scan. A task covers a run of partitions of the timeline
+  // and splits it in halves until a single partition is left; a partition with too many Event in
+  // the window is then split in halves of time, guided by the counts of its slots, until each task
+  // has about LEAF_EVENTS Event or a single slot. The leaves accumulate their Event in a container
+  // of their own and the containers are combined left to right, so the result keeps the time
+  // order even when the collector depends on it. Nothing is locked, the leaves walk the partitions
+  // with a cursor as any query does and skip the partitions dropped meanwhile.
+
+  static final long LEAF_EVENTS = 16_384;
+
+  private final Collector<? super Event, A, ?> collector;
+  private final List<EventTimeline.Partition> partitions;
+  private final long startTime;
+  private final long endTime;
+
+  ParallelScan(Collector<? super Event, A, ?> collector, List<EventTimeline.Partition> partitions,
+      long startTime, long endTime) {
+    this.collector = collector;
+    this.partitions = partitions;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  @Override
+  protected A compute() {
+    if (partitions.size() > 1) {
+      int middle = partitions.size() / 2;
+      return fork(new ParallelScan<>(collector, partitions.subList(0, middle), startTime, endTime),
+          new ParallelScan<>(collector, partitions.subList(middle, partitions.size()), startTime,
+              endTime));
+    }
+
+    A container = collector.supplier().get();
+    if (partitions.isEmpty()) {
+      return container;
+    }
+
+    EventTimeline.Partition partition = partitions.get(0);
+    long from = Math.max(startTime, partition.start);
+    long to = Math.min(endTime, partition.end());
+    if (to - from >= partition.slotWidth && partition.estimate(from, to) > LEAF_EVENTS) {
+      long middle = from + (to - from) / 2;
+      return fork(new ParallelScan<>(collector, partitions, from, middle),
+          new ParallelScan<>(collector, partitions, middle + 1, to));
+    }
+
+    EventTimeline.PartitionCursor cursor = new EventTimeline.PartitionCursor(partition, from, to);
+    while (cursor.next()) {
+      collector.accumulator().accept(container, cursor.event());
+    }
+    return container;
+  }
+
+  private A fork(ParallelScan<A> left, ParallelScan<A> right) {
+    left.fork();
+    A rightResult = right.compute();
+    return collector.combiner().apply(left.join(), rightResult);
+  }
+}
@@ -0,0 +1,68 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+final class PeriodicPass implements AutoCloseable {
+
+  // A pass over a store run periodically from a daemon thread of its own, the schedule shared by
+  // the RetentionEnforcer and the EventCompactor. Each pass answers the number of Event it handled,
+  // added up for the whole life of the schedule.
+  // The passes run with a fixed delay between them, a slow pass never overlaps the next one. A
+  // pass that throws is recorded and the next ones still run: the executor cancels a task whose
+  // run throws, which would stop the passes for good without any sign of it, and the store would
+  // then grow without bound.
+
+  private final LongSupplier pass;
+  private final ScheduledExecutorService executor;
+  private final LongAdder handled = new LongAdder();
+  private volatile RuntimeException lastFailure;
+
+  /**
+   * Starts the passes, the first one runs right away.
+   *
+   * @param period the delay between the end of a pass and the start of the next one.
+   */
+  PeriodicPass(String threadName, LongSupplier pass, long period, TimeUnit unit) {
+    this.pass = pass;
+    this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, threadName);
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::run, 0, period, unit);
+  }
+
+  /**
+   * Number of Event handled by the passes so far.
+   */
+  long handled() {
+    return handled.sum();
+  }
+
+  /**
+   * The exception thrown by the last pass that failed, null if none failed.
+   */
+  RuntimeException lastFailure() {
+    return lastFailure;
+  }
+
+  /**
+   * Stops the passes, a pass already running finishes on its own.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void run() {
+    try {
+      handled.add(pass.getAsLong());
+    } catch (RuntimeException e) {
+      lastFailure = e;
+    }
+  }
+}
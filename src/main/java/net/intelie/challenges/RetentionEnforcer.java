@@ -0,0 +1,53 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.TimeUnit;
+
+public final class RetentionEnforcer implements AutoCloseable {
+
+  // Applies a RetentionPolicy to an EventStoreMemory periodically, from a daemon thread of its
+  // own. Each pass walks the types one by one and drops their expired partitions (see
+  // EventStoreMemory.enforceRetention): the pass takes no lock, so inserts and queries run along
+  // with it, and the work of a pass is bounded by the number of types plus the number of
+  // partitions dropped, not by the number of Event dropped.
+  // The passes are scheduled by a PeriodicPass: a slow pass never overlaps the next one and a pass
+  // that throws is kept for lastFailure, the next ones still run.
+
+  private final PeriodicPass passes;
+
+  /**
+   * Starts applying the policy to the store, the first pass runs right away.
+   *
+   * @param period the delay between the end of a pass and the start of the next one.
+   * @throws IllegalArgumentException if an argument is null or the period is not positive.
+   */
+  public RetentionEnforcer(EventStoreMemory store, RetentionPolicy policy, long period,
+      TimeUnit unit) {
+    if (store == null || policy == null || unit == null || period <= 0)
+      throw new IllegalArgumentException();
+
+    this.passes = new PeriodicPass("event-store-retention", () -> store.enforceRetention(policy),
+        period, unit);
+  }
+
+  /**
+   * Number of Event dropped by the passes so far.
+   */
+  public long droppedEvents() {
+    return passes.handled();
+  }
+
+  /**
+   * The exception thrown by the last pass that failed, null if none failed.
+   */
+  public RuntimeException lastFailure() {
+    return passes.lastFailure();
+  }
+
+  /**
+   * Stops the passes, a pass already running finishes on its own.
+   */
+  @Override
+  public void close() {
+    passes.close();
+  }
+}
@@ -0,0 +1,83 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.TimeUnit;
+
+public final class RetentionPolicy {
+
+  // How long the Event of EventStoreMemory are kept: up to a maximum age, relative to the clock of
+  // the store, and/or up to a maximum number of Event per type. The policy is applied by
+  // EventStoreMemory.enforceRetention, usually from a RetentionEnforcer, and it reclaims whole
+  // partitions of time, so it is approximate: an Event may outlive its age by the width of a
+  // partition and a type may keep up to one partition more than its maximum number of Event.
+  // The policy is immutable, the with methods return a new one.
+
+  private static final RetentionPolicy UNLIMITED = new RetentionPolicy(Long.MAX_VALUE,
+      Long.MAX_VALUE);
+
+  private final long maxAgeMillis;
+  private final long maxEventsPerType;
+
+  private RetentionPolicy(long maxAgeMillis, long maxEventsPerType) {
+    this.maxAgeMillis = maxAgeMillis;
+    this.maxEventsPerType = maxEventsPerType;
+  }
+
+  /**
+   * The policy that keeps every Event.
+   */
+  public static RetentionPolicy unlimited() {
+    return UNLIMITED;
+  }
+
+  /**
+   * Keeps the Event whose timestamp is at most the given age behind the clock of the store.
+   *
+   * @throws IllegalArgumentException if the age is negative.
+   */
+  public static RetentionPolicy maxAge(long duration, TimeUnit unit) {
+    return UNLIMITED.withMaxAge(duration, unit);
+  }
+
+  /**
+   * Keeps the newest Event of each type, about the given number of them.
+   *
+   * @throws IllegalArgumentException if the number is negative.
+   */
+  public static RetentionPolicy maxEventsPerType(long maxEvents) {
+    return UNLIMITED.withMaxEventsPerType(maxEvents);
+  }
+
+  public RetentionPolicy withMaxAge(long duration, TimeUnit unit) {
+    if (duration < 0 || unit == null)
+      throw new IllegalArgumentException();
+
+    return new RetentionPolicy(unit.toMillis(duration), maxEventsPerType);
+  }
+
+  public RetentionPolicy withMaxEventsPerType(long maxEvents) {
+    if (maxEvents < 0)
+      throw new IllegalArgumentException();
+
+    return new RetentionPolicy(maxAgeMillis, maxEvents);
+  }
+
+  /**
+   * The maximum age in milliseconds, Long.MAX_VALUE when the age is not limited.
+   */
+  public long maxAgeMillis() {
+    return maxAgeMillis;
+  }
+
+  /**
+   * The maximum number of Event per type, Long.MAX_VALUE when it is not limited.
+   */
+  public long maxEventsPerType() {
+    return maxEventsPerType;
+  }
+
+  @Override
+  public String toString() {
+    return "RetentionPolicy{maxAgeMillis=" + maxAgeMillis + ", maxEventsPerType="
+        + maxEventsPerType + "}";
+  }
+}
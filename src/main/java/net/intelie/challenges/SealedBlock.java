@@ -0,0 +1,307 @@
+package net.intelie.challenges;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class SealedBlock {
+
+  // The Event of a partition once sealed by a compaction (see EventTimeline.Partition.seal). Only
+  // the keys are kept, the Event are built again from the type of the block when read, so the
+  // Event of a sealed block are equal to the ones inserted but not the same objects.
+  // The keys, sorted, are cut in chunks of CHUNK keys. Each chunk keeps its first key and its
+  // smallest and greatest timestamps in plain arrays, the others are encoded one after the other in
+  // a byte array: the delta-of-delta of the timestamp and the delta of the sequence, each one
+  // zigzag encoded in a varint. The Event of a stream arrive at an almost constant rate and the
+  // Event of a type take nearly consecutive sequences, so both numbers are close to zero and a key
+  // takes two or three bytes, instead of the ~86 of an Event linked in a skip list.
+  // The block is immutable, except for one bit per key that marks the removed ones, set by a CAS.
+  // The cost Big-O of operations is:
+  // cursor: O(log c) to find the first chunk that reaches the timestamp, c represents the number
+  // of chunks, plus O(CHUNK) to decode up to the key, then O(1) for each key, decoded as it is
+  // read; the chunks before the window are never decoded, the cursor stops after it;
+  // remove, first, last: O(log c + CHUNK);
+
+  static final int CHUNK = 128;
+
+  final String type;
+  final int size;
+  private final long[] firstTimestamps;
+  private final long[] lastTimestamps;
+  private final long[] firstSequences;
+  // where the deltas of each chunk start in data, plus the end of the last one
+  private final int[] offsets;
+  private final byte[] data;
+  private final AtomicLongArray removed;
+  private final AtomicInteger removedCount = new AtomicInteger();
+
+  private SealedBlock(String type, int size, long[] firstTimestamps, long[] lastTimestamps,
+      long[] firstSequences, int[] offsets, byte[] data) {
+    this.type = type;
+    this.size = size;
+    this.firstTimestamps = firstTimestamps;
+    this.lastTimestamps = lastTimestamps;
+    this.firstSequences = firstSequences;
+    this.offsets = offsets;
+    this.data = data;
+    this.removed = new AtomicLongArray((size + 63) >>> 6);
+  }
+
+  /**
+   * Encodes the first size keys of the arrays, sorted by timestamp and then by sequence.
+   */
+  static SealedBlock of(String type, long[] timestamps, long[] sequences, int size) {
+    int chunks = (size + CHUNK - 1) / CHUNK;
+    long[] firstTimestamps = new long[chunks];
+    long[] lastTimestamps = new long[chunks];
+    long[] firstSequences = new long[chunks];
+    int[] offsets = new int[chunks + 1];
+    Writer writer = new Writer(2 * size + 16);
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int start = chunk * CHUNK;
+      int end = Math.min(size, start + CHUNK);
+      firstTimestamps[chunk] = timestamps[start];
+      lastTimestamps[chunk] = timestamps[end - 1];
+      firstSequences[chunk] = sequences[start];
+      offsets[chunk] = writer.length;
+      long delta = 0;
+      for (int i = start + 1; i < end; i++) {
+        long current = timestamps[i] - timestamps[i - 1];
+        writer.write(zigzag(current - delta));
+        writer.write(zigzag(sequences[i] - sequences[i - 1]));
+        delta = current;
+      }
+    }
+    offsets[chunks] = writer.length;
+    return new SealedBlock(type, size, firstTimestamps, lastTimestamps, firstSequences, offsets,
+        Arrays.copyOf(writer.buffer, writer.length));
+  }
+
+  /**
+   * A cursor whose first next moves to the first key not below (timestamp, sequence).
+   */
+  Cursor cursor(long timestamp, long sequence) {
+    Cursor cursor = new Cursor(chunkReaching(timestamp));
+    while (cursor.advance()) {
+      if (compare(cursor.timestamp, cursor.sequence, timestamp, sequence) >= 0) {
+        cursor.ahead = true;
+        break;
+      }
+    }
+    return cursor;
+  }
+
+  boolean isRemoved(int index) {
+    return (removed.get(index >>> 6) & (1L << index)) != 0;
+  }
+
+  /**
+   * Marks the key as removed, false if it is not in the block or was already removed.
+   */
+  boolean remove(long timestamp, long sequence) {
+    Cursor cursor = cursor(timestamp, sequence);
+    if (!cursor.next() || cursor.timestamp != timestamp || cursor.sequence != sequence) {
+      return false;
+    }
+
+    int word = cursor.index >>> 6;
+    long bit = 1L << cursor.index;
+    long current;
+    do {
+      current = removed.get(word);
+      if ((current & bit) != 0) {
+        return false;
+      }
+    } while (!removed.compareAndSet(word, current, current | bit));
+    removedCount.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Number of keys not removed.
+   */
+  int live() {
+    return size - removedCount.get();
+  }
+
+  /**
+   * The smallest timestamp not removed between startTime and endTime, both inclusive.
+   */
+  OptionalLong first(long startTime, long endTime) {
+    Cursor cursor = cursor(startTime, Long.MIN_VALUE);
+    while (cursor.next() && cursor.timestamp <= endTime) {
+      if (!isRemoved(cursor.index)) {
+        return OptionalLong.of(cursor.timestamp);
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  /**
+   * The greatest timestamp not removed between startTime and endTime, both inclusive.
+   */
+  OptionalLong last(long startTime, long endTime) {
+    // the last chunk that starts before the end of the window, then the previous ones while they
+    // reach it
+    for (int chunk = chunkStartingAfter(endTime) - 1;
+        chunk >= 0 && lastTimestamps[chunk] >= startTime; chunk--) {
+      int end = Math.min(size, (chunk + 1) * CHUNK);
+      long last = Long.MIN_VALUE;
+      boolean found = false;
+      Cursor cursor = new Cursor(chunk);
+      while (cursor.advance() && cursor.index < end && cursor.timestamp <= endTime) {
+        if (cursor.timestamp >= startTime && !isRemoved(cursor.index)) {
+          last = cursor.timestamp;
+          found = true;
+        }
+      }
+      if (found) {
+        return OptionalLong.of(last);
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  /**
+   * Heap taken by the block, the arrays and a rough share of the object headers.
+   */
+  long bytes() {
+    return 64 + data.length + 28L * firstTimestamps.length + 8L * removed.length();
+  }
+
+  // the first chunk whose greatest timestamp is not below the timestamp, or the number of chunks
+  private int chunkReaching(long timestamp) {
+    int low = 0;
+    int high = lastTimestamps.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (lastTimestamps[middle] < timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // the first chunk whose smallest timestamp is above the timestamp, or the number of chunks
+  private int chunkStartingAfter(long timestamp) {
+    int low = 0;
+    int high = firstTimestamps.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (firstTimestamps[middle] <= timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static int compare(long timestamp, long sequence, long otherTimestamp,
+      long otherSequence) {
+    int result = Long.compare(timestamp, otherTimestamp);
+    return result != 0 ? result : Long.compare(sequence, otherSequence);
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Decodes the keys in order, one at a time, from the start of a chunk up to the end of the
+   * block.
+   */
+  final class Cursor {
+    private int index;
+    private int position;
+    private long timestamp;
+    private long sequence;
+    private long delta;
+    // the key was decoded by the positioning, the next call to next returns it
+    private boolean ahead;
+
+    private Cursor(int chunk) {
+      this.index = chunk * CHUNK - 1;
+    }
+
+    boolean next() {
+      if (ahead) {
+        ahead = false;
+        return true;
+      }
+      return advance();
+    }
+
+    int index() {
+      return index;
+    }
+
+    long timestamp() {
+      return timestamp;
+    }
+
+    long sequence() {
+      return sequence;
+    }
+
+    private boolean advance() {
+      int following = index + 1;
+      if (following >= size) {
+        index = size;
+        return false;
+      }
+      if (following % CHUNK == 0) {
+        int chunk = following / CHUNK;
+        timestamp = firstTimestamps[chunk];
+        sequence = firstSequences[chunk];
+        position = offsets[chunk];
+        delta = 0;
+      } else {
+        delta += unzigzag(read());
+        timestamp += delta;
+        sequence += unzigzag(read());
+      }
+      index = following;
+      return true;
+    }
+
+    private long read() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return value;
+    }
+  }
+
+  private static final class Writer {
+    private byte[] buffer;
+    private int length;
+
+    Writer(int capacity) {
+      this.buffer = new byte[capacity];
+    }
+
+    void write(long value) {
+      if (buffer.length - length < 10) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      while ((value & ~0x7FL) != 0) {
+        buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[length++] = (byte) value;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package net.intelie.challenges;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public final class Subscription implements AutoCloseable {
+
+  // A continuous query of EventStoreMemory.subscribe: the Event of a type whose timestamp is inside
+  // a window, pushed by the insert that accepted them into a bounded EventRingBuffer of this
+  // subscriber, instead of the subscriber polling the store with query. The insert never waits:
+  // when the buffer is full the Event is dropped for this subscriber only and counted in
+  // dropped, that is the backpressure, the consumer sees how much it lost and may subscribe again
+  // with a larger capacity or query the store for the gap. The Event inserted before the
+  // subscription are not delivered, the store keeps them for query.
+  // The Event are taken by a single consumer thread: poll and drainTo never block, poll with a
+  // timeout parks the consumer until an insert delivers an Event, the subscription is closed or the
+  // time is over. The Event of the same insert thread arrive in the order they were inserted; the
+  // ones of different threads are interleaved in the order they reached the buffer, not by
+  // timestamp.
+
+  private final String type;
+  private final long startTime;
+  private final long endTime;
+  private final EventRingBuffer buffer;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Subscriptions owner;
+  private volatile Thread waiter;
+  private volatile boolean closed;
+
+  Subscription(String type, long startTime, long endTime, int capacity, Subscriptions owner) {
+    this.type = type;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.buffer = new EventRingBuffer(capacity);
+    this.owner = owner;
+  }
+
+  public String type() {
+    return type;
+  }
+
+  public long startTime() {
+    return startTime;
+  }
+
+  public long endTime() {
+    return endTime;
+  }
+
+  /**
+   * @return the capacity of the buffer, the one asked rounded up to a power of two.
+   */
+  public int capacity() {
+    return buffer.capacity();
+  }
+
+  /**
+   * @return the number of Event waiting in the buffer.
+   */
+  public int pending() {
+    return buffer.size();
+  }
+
+  /**
+   * @return the Event not delivered because the buffer was full.
+   */
+  public long dropped() {
+    return dropped.get();
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return the oldest Event delivered, null if there is none.
+   */
+  public Event poll() {
+    return buffer.poll();
+  }
+
+  /**
+   * Waits for the next Event delivered.
+   *
+   * @return null if the time is over or the subscription was closed with its buffer empty.
+   * @throws InterruptedException if the consumer is interrupted while it waits.
+   */
+  public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Event event = buffer.poll();
+    while (event == null && !closed) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+
+      waiter = Thread.currentThread();
+      // the Event delivered before the waiter was published would not unpark it
+      event = buffer.poll();
+      if (event == null && !closed) {
+        LockSupport.parkNanos(this, remaining);
+        event = buffer.poll();
+      }
+      waiter = null;
+      if (event == null && Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return event == null ? buffer.poll() : event;
+  }
+
+  /**
+   * Moves up to max Event delivered to the collection, without waiting.
+   *
+   * @return the number of Event moved.
+   */
+  public int drainTo(Collection<? super Event> events, int max) {
+    int drained = 0;
+    Event event;
+    while (drained < max && (event = buffer.poll()) != null) {
+      events.add(event);
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * Stops the delivery, the Event already in the buffer may still be taken.
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      owner.remove(this);
+      wakeUp();
+    }
+  }
+
+  // called by the insert that accepted the Event
+  void deliver(Event event) {
+    if (closed || event.timestamp() < startTime || event.timestamp() > endTime) {
+      return;
+    }
+    if (buffer.offer(event)) {
+      wakeUp();
+    } else {
+      dropped.incrementAndGet();
+    }
+  }
+
+  private void wakeUp() {
+    Thread thread = waiter;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+}
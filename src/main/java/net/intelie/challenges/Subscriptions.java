@@ -0,0 +1,60 @@
+package net.intelie.challenges;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class Subscriptions {
+
+  // The subscriptions of a store by type, each type with an array copied on every subscribe and
+  // close, which are rare, so the insert reads the array without any lock. The subscriptions are
+  // kept apart from the structures of the Event, they survive a removeAll of their type.
+  // The cost Big-O of operations is:
+  // active: O(1), a read of the number of subscriptions, all an insert pays while there is none;
+  // publish: O(1) lookup of the type, then O(s) offers, s represents the subscriptions of the type;
+  // add, remove: O(s), the copy of the array of the type;
+
+  private final ConcurrentHashMap<String, Subscription[]> byType = new ConcurrentHashMap<>();
+  private final AtomicInteger count = new AtomicInteger();
+
+  boolean active() {
+    return count.get() != 0;
+  }
+
+  void add(Subscription subscription) {
+    byType.merge(subscription.type(), new Subscription[] {subscription}, (current, added) -> {
+      Subscription[] subscriptions = Arrays.copyOf(current, current.length + 1);
+      subscriptions[current.length] = added[0];
+      return subscriptions;
+    });
+    count.incrementAndGet();
+  }
+
+  void remove(Subscription subscription) {
+    boolean[] removed = new boolean[1];
+    byType.computeIfPresent(subscription.type(), (type, current) -> {
+      Subscription[] subscriptions = new Subscription[current.length];
+      int size = 0;
+      for (Subscription other : current) {
+        if (other == subscription) {
+          removed[0] = true;
+        } else {
+          subscriptions[size++] = other;
+        }
+      }
+      return size == 0 ? null : Arrays.copyOf(subscriptions, size);
+    });
+    if (removed[0]) {
+      count.decrementAndGet();
+    }
+  }
+
+  void publish(Event event) {
+    Subscription[] subscriptions = byType.get(event.type());
+    if (subscriptions != null) {
+      for (Subscription subscription : subscriptions) {
+        subscription.deliver(event);
+      }
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package net.intelie.challenges;
+
+abstract class TimestampChunk {
+
+  // A fixed capacity block of sorted timestamps, the leaf of a TimestampColumn. The subclasses
+  // only decide where the longs live (a long[] on the heap, a direct ByteBuffer, a mapped file),
+  // the searches and the shifting of values are written once here on top of get, set and move.
+  // A chunk is not thread-safe, the column guards it with its lock.
+
+  // the capacity of the chunks kept in memory, the mapped ones are bigger (see
+  // MappedTimestampChunk)
+  static final int CAPACITY = 4096;
+
+  final int capacity;
+  int size;
+
+  TimestampChunk(int capacity) {
+    this.capacity = capacity;
+  }
+
+  abstract long get(int index);
+
+  abstract void set(int index, long timestamp);
+
+  /**
+   * Copies length values from the position from to the position to, the ranges may overlap.
+   */
+  abstract void move(int from, int to, int length);
+
+  /**
+   * Gives back the memory of the chunk, it must not be used afterwards.
+   */
+  void release() {}
+
+  /**
+   * Releases the chunk and deletes what it may have persisted.
+   */
+  void discard() {
+    release();
+  }
+
+  /**
+   * Writes the chunk to its storage, for the chunks that have one.
+   */
+  void flush() {}
+
+  /**
+   * Called after each change of size, for the chunks that have to persist it.
+   */
+  void sizeChanged() {}
+
+  final boolean isFull() {
+    return size == capacity;
+  }
+
+  final long last() {
+    return get(size - 1);
+  }
+
+  // position of the first value >= timestamp
+  final int lowerBound(long timestamp) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (get(middle) < timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // position of the first value > timestamp
+  final int upperBound(long timestamp) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (get(middle) <= timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  final void append(long timestamp) {
+    set(size, timestamp);
+    size++;
+    sizeChanged();
+  }
+
+  final void insert(int position, long timestamp) {
+    move(position, position + 1, size - position);
+    set(position, timestamp);
+    size++;
+    sizeChanged();
+  }
+
+  final void delete(int position) {
+    move(position + 1, position, size - position - 1);
+    size--;
+    sizeChanged();
+  }
+
+  /**
+   * Deletes the values of the positions from (inclusive) to to (exclusive).
+   */
+  final void delete(int from, int to) {
+    move(to, from, size - to);
+    size -= to - from;
+    sizeChanged();
+  }
+
+  /**
+   * Moves the upper half of this chunk to the empty chunk upperHalf.
+   */
+  final void splitInto(TimestampChunk upperHalf) {
+    int half = size / 2;
+    for (int i = half; i < size; i++) {
+      upperHalf.set(i - half, get(i));
+    }
+    upperHalf.size = size - half;
+    upperHalf.sizeChanged();
+    size = half;
+    sizeChanged();
+  }
+}
@@ -0,0 +1,666 @@
+package net.intelie.challenges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+final class TimestampColumn {
+
+  // The timestamps of one type stored as primitives, sorted, in fixed capacity chunks of longs.
+  // The chunks work as the leaves of a B-tree: they never overlap, so a timestamp is found with a
+  // binary search over the chunks followed by a binary search inside one chunk, and an insert
+  // only shifts the values of a single chunk. A full chunk is split in two halves, except
+  // when the new timestamp is the greatest one (the common case of events arriving in order), then
+  // a new chunk is opened at the end and the old one stays full.
+  // Each Event costs 8 bytes plus the free space of its chunk, there is no object per Event for
+  // the GarbageCollector to trace. Where the chunks live is decided by the allocator given by the
+  // store (heap, direct memory, mapped files), see TimestampChunk.
+  // A ReentrantReadWriteLock per column guards the chunks: readers share the lock while writers
+  // of the same type serialize, writers of different types never meet. Released chunks are only
+  // freed under the write lock, so no reader can touch freed memory.
+  // The cost Big-O of operations is:
+  // add: O(1) when appended at the end, O(log n + capacity of a chunk) otherwise;
+  // remove: O(log n + capacity of a chunk);
+  // removeRange: O(log n + c + capacity of a chunk), c represents the number of chunks inside the
+  // range, they are dropped whole and only the two chunks on the edges shift their values;
+  // cursor: O(log n) to find the start, then O(1) for each value read;
+  // confinedIterator, spliterator: O(log n) for each block of about a chunk, O(1) for each value;
+  // first, last: O(log n), two binary searches;
+  // count: O(log n + c), the chunks inside the range answer with their size, only the two chunks on
+  // the edges are searched;
+
+  private final String type;
+  private final Supplier<? extends TimestampChunk> allocator;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ArrayList<TimestampChunk> chunks = new ArrayList<>();
+  private long size;
+  // Incremented on each modification, so an open Cursor knows it has to find its position again.
+  // Written under the write lock; volatile so the confined iterator checks it without the lock.
+  private volatile long version;
+  private boolean released;
+
+  TimestampColumn(String type, Supplier<? extends TimestampChunk> allocator) {
+    this.type = type;
+    this.allocator = allocator;
+  }
+
+  /**
+   * Column made of chunks that already hold timestamps, they must be sorted and not overlap.
+   */
+  TimestampColumn(String type, Supplier<? extends TimestampChunk> allocator,
+      List<? extends TimestampChunk> existing) {
+    this(type, allocator);
+    for (TimestampChunk chunk : existing) {
+      chunks.add(chunk);
+      size += chunk.size;
+    }
+  }
+
+  /**
+   * The type of the column, the same String instance for all the Event built from it.
+   */
+  String type() {
+    return type;
+  }
+
+  /**
+   * @return false if the column was released, then nothing is added.
+   */
+  boolean add(long timestamp) {
+    lock.writeLock().lock();
+    try {
+      if (released) {
+        return false;
+      }
+      addLocked(timestamp);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a batch of timestamps under a single acquisition of the lock. Sorted batches newer than
+   * the column, the common case, become appends.
+   *
+   * @return false if the column was released, then nothing is added.
+   */
+  boolean addAll(long[] sortedTimestamps) {
+    lock.writeLock().lock();
+    try {
+      if (released) {
+        return false;
+      }
+      for (long timestamp : sortedTimestamps) {
+        addLocked(timestamp);
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes one occurrence of the timestamp.
+   *
+   * @return false if the column has no such timestamp.
+   */
+  boolean remove(long timestamp) {
+    lock.writeLock().lock();
+    try {
+      return removeLocked(timestamp);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes every timestamp between startTime and endTime, both inclusive.
+   *
+   * @return the number of timestamps removed.
+   */
+  long removeRange(long startTime, long endTime) {
+    lock.writeLock().lock();
+    try {
+      long removed = 0;
+      int wholeFrom = -1;
+      int wholeTo = -1;
+      for (int index = firstChunkWithLastAtLeast(startTime); index < chunks.size()
+          && chunks.get(index).get(0) <= endTime; index++) {
+        TimestampChunk chunk = chunks.get(index);
+        int from = chunk.lowerBound(startTime);
+        int to = chunk.upperBound(endTime);
+        removed += to - from;
+        if (from == 0 && to == chunk.size) {
+          // the chunks inside the range are contiguous, they leave the list at once below
+          if (wholeFrom < 0) {
+            wholeFrom = index;
+          }
+          wholeTo = index + 1;
+          chunk.discard();
+        } else {
+          chunk.delete(from, to);
+        }
+      }
+      if (wholeFrom >= 0) {
+        chunks.subList(wholeFrom, wholeTo).clear();
+      }
+
+      if (removed > 0) {
+        version++;
+        size -= removed;
+      }
+      return removed;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Number of timestamps between startTime and endTime, both inclusive.
+   */
+  long count(long startTime, long endTime) {
+    lock.readLock().lock();
+    try {
+      long count = 0;
+      for (int index = firstChunkWithLastAtLeast(startTime); index < chunks.size()
+          && chunks.get(index).get(0) <= endTime; index++) {
+        TimestampChunk chunk = chunks.get(index);
+        if (chunk.get(0) >= startTime && chunk.last() <= endTime) {
+          count += chunk.size;
+        } else {
+          count += chunk.upperBound(endTime) - chunk.lowerBound(startTime);
+        }
+      }
+      return count;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The smallest timestamp between startTime and endTime, both inclusive.
+   */
+  OptionalLong first(long startTime, long endTime) {
+    lock.readLock().lock();
+    try {
+      int index = firstChunkWithLastAtLeast(startTime);
+      if (index == chunks.size()) {
+        return OptionalLong.empty();
+      }
+      TimestampChunk chunk = chunks.get(index);
+      long first = chunk.get(chunk.lowerBound(startTime));
+      return first <= endTime ? OptionalLong.of(first) : OptionalLong.empty();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The greatest timestamp between startTime and endTime, both inclusive.
+   */
+  OptionalLong last(long startTime, long endTime) {
+    lock.readLock().lock();
+    try {
+      // the chunk after the last one that may hold the answer, its first values may be in range
+      int index = firstChunkWithLastAfter(endTime);
+      long last;
+      if (index < chunks.size() && chunks.get(index).upperBound(endTime) > 0) {
+        TimestampChunk chunk = chunks.get(index);
+        last = chunk.get(chunk.upperBound(endTime) - 1);
+      } else if (index > 0) {
+        last = chunks.get(index - 1).last();
+      } else {
+        return OptionalLong.empty();
+      }
+      return last >= startTime ? OptionalLong.of(last) : OptionalLong.empty();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  long size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Releases every chunk. The column looks empty afterwards and refuses new timestamps, the
+   * open cursors simply reach their end.
+   */
+  void release() {
+    clear(false);
+  }
+
+  /**
+   * Same as release, but the chunks also delete what they persisted.
+   */
+  void discard() {
+    clear(true);
+  }
+
+  /**
+   * Writes every chunk to its storage.
+   */
+  void flush() {
+    lock.readLock().lock();
+    try {
+      for (TimestampChunk chunk : chunks) {
+        chunk.flush();
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Cursor over the timestamps between startTime and endTime, both inclusive.
+   */
+  Cursor cursor(long startTime, long endTime) {
+    return new Cursor(startTime, endTime);
+  }
+
+  /**
+   * Spliterator over the Event between startTime and endTime, both inclusive, see
+   * EventSpliterator.
+   */
+  Spliterator<Event> spliterator(long startTime, long endTime) {
+    return new EventSpliterator(startTime, endTime);
+  }
+
+  /**
+   * Iterator over the Event between startTime and endTime for a single thread, it reads the column
+   * in the blocks of EventSpliterator, so it takes the read lock once for each block and not once
+   * for each Event. remove deletes one occurrence of the last timestamp returned.
+   * Before it returns a value of its block, the iterator compares the version of the column with
+   * the one the block was copied at: when the column changed, the rest of the block is copied again
+   * from the last timestamp returned, skipping its repetitions already returned, as a Cursor finds
+   * its position again. So it never returns a timestamp removed before its call to next.
+   */
+  Iterator<Event> confinedIterator(long startTime, long endTime) {
+    EventSpliterator blocks = new EventSpliterator(startTime, endTime);
+    return new Iterator<Event>() {
+      private boolean started;
+      private long last;
+      // how many times the last timestamp was returned, less the ones this iterator removed
+      private long repetitions;
+      private boolean removable;
+
+      @Override
+      public boolean hasNext() {
+        if (blocks.position < blocks.blockSize && blocks.version != version) {
+          recopy();
+        }
+        return blocks.position < blocks.blockSize || blocks.fill();
+      }
+
+      @Override
+      public Event next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        long value = blocks.block[blocks.position++];
+        if (started && value == last) {
+          repetitions++;
+        } else {
+          last = value;
+          repetitions = 1;
+          started = true;
+        }
+        removable = true;
+        return new Event(type, last);
+      }
+
+      @Override
+      public void remove() {
+        if (!removable) {
+          throw new IllegalStateException();
+        }
+        if (TimestampColumn.this.remove(last)) {
+          repetitions--;
+        }
+        removable = false;
+      }
+
+      private void recopy() {
+        blocks.from = started ? last : blocks.block[blocks.position];
+        blocks.lastBlock = false;
+        blocks.fill();
+        for (long skipped = 0; started && skipped < repetitions
+            && blocks.position < blocks.blockSize; skipped++) {
+          if (blocks.block[blocks.position] != last) {
+            break;
+          }
+          blocks.position++;
+        }
+      }
+    };
+  }
+
+  private void clear(boolean discard) {
+    lock.writeLock().lock();
+    try {
+      released = true;
+      version++;
+      size = 0;
+      for (TimestampChunk chunk : chunks) {
+        if (discard) {
+          chunk.discard();
+        } else {
+          chunk.release();
+        }
+      }
+      chunks.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void addLocked(long timestamp) {
+    version++;
+    size++;
+
+    int last = chunks.size() - 1;
+    if (last < 0 || timestamp >= chunks.get(last).last()) {
+      // appending at the end
+      if (last < 0 || chunks.get(last).isFull()) {
+        chunks.add(allocator.get());
+        last++;
+      }
+      chunks.get(last).append(timestamp);
+      return;
+    }
+
+    int index = firstChunkWithLastAfter(timestamp);
+    TimestampChunk chunk = chunks.get(index);
+    int position = chunk.upperBound(timestamp);
+    if (chunk.isFull()) {
+      TimestampChunk upperHalf = allocator.get();
+      chunk.splitInto(upperHalf);
+      chunks.add(index + 1, upperHalf);
+      if (position > chunk.size) {
+        position -= chunk.size;
+        chunk = upperHalf;
+      }
+    }
+    chunk.insert(position, timestamp);
+  }
+
+  private boolean removeLocked(long timestamp) {
+    int index = firstChunkWithLastAtLeast(timestamp);
+    if (index == chunks.size()) {
+      return false;
+    }
+
+    TimestampChunk chunk = chunks.get(index);
+    int position = chunk.lowerBound(timestamp);
+    if (chunk.get(position) != timestamp) {
+      return false;
+    }
+
+    version++;
+    size--;
+    chunk.delete(position);
+    if (chunk.size == 0) {
+      chunks.remove(index);
+      chunk.discard();
+    }
+    return true;
+  }
+
+  // binary search of the first chunk whose last value is >= timestamp
+  private int firstChunkWithLastAtLeast(long timestamp) {
+    int low = 0;
+    int high = chunks.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (chunks.get(middle).last() < timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // binary search of the first chunk whose last value is > timestamp
+  private int firstChunkWithLastAfter(long timestamp) {
+    int low = 0;
+    int high = chunks.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (chunks.get(middle).last() <= timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * A position inside the column. The cursor remembers the last timestamp it returned and how
+   * many times it returned it, so when the column changes under it (the version moved) it finds
+   * its position again with a binary search. It never returns a removed timestamp, it never goes
+   * back to timestamps inserted behind it and it sees the ones inserted ahead of it.
+   */
+  final class Cursor {
+    private final long startTime;
+    private final long endTime;
+    private long expectedVersion = -1;
+    private int chunkIndex;
+    private int offset;
+    private boolean started;
+    private boolean exhausted;
+    private long timestamp;
+    // how many times the current timestamp was returned, counting the current one
+    private long repetitions;
+
+    private Cursor(long startTime, long endTime) {
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+
+    boolean next() {
+      if (exhausted) {
+        return false;
+      }
+
+      lock.readLock().lock();
+      try {
+        if (started && expectedVersion == version) {
+          offset++;
+        } else {
+          seek();
+        }
+        if (offset == chunkSize(chunkIndex)) {
+          chunkIndex++;
+          offset = 0;
+        }
+        if (chunkIndex >= chunks.size() || chunks.get(chunkIndex).get(offset) > endTime) {
+          exhausted = true;
+          return false;
+        }
+
+        long value = chunks.get(chunkIndex).get(offset);
+        if (started && value == timestamp) {
+          repetitions++;
+        } else {
+          timestamp = value;
+          repetitions = 1;
+          started = true;
+        }
+        return true;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    long timestamp() {
+      return timestamp;
+    }
+
+    /**
+     * Removes from the column the timestamp returned by the last call to next.
+     */
+    void remove() {
+      lock.writeLock().lock();
+      try {
+        if (removeLocked(timestamp)) {
+          repetitions--;
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private int chunkSize(int index) {
+      return index < chunks.size() ? chunks.get(index).size : 0;
+    }
+
+    // positions the cursor on the candidate for the next value, the lock must be held
+    private void seek() {
+      long from = started ? timestamp : startTime;
+      chunkIndex = firstChunkWithLastAtLeast(from);
+      offset = chunkIndex < chunks.size() ? chunks.get(chunkIndex).lowerBound(from) : 0;
+
+      // skip the repetitions of the current timestamp that were already returned
+      for (long skipped = 0; started && skipped < repetitions
+          && chunkIndex < chunks.size(); skipped++) {
+        if (chunks.get(chunkIndex).get(offset) != timestamp) {
+          break;
+        }
+        offset++;
+        if (offset == chunks.get(chunkIndex).size) {
+          chunkIndex++;
+          offset = 0;
+        }
+      }
+      expectedVersion = version;
+    }
+  }
+
+  /**
+   * The Spliterator of the streams of a column. It copies the timestamps in blocks of about a
+   * chunk under a single acquisition of the read lock, then gives their Event without any lock, so
+   * a sequential stream takes the lock once every few thousand Event instead of once per Event.
+   * A block always ends with every repetition of its last timestamp, so the next block starts
+   * right after it. Until its first block, the spliterator splits its window in two halves of
+   * time; the counts of the chunks tell the size of each half.
+   * Each block is a snapshot of the column: the changes made after it was copied are seen, or
+   * not, by the next blocks only.
+   */
+  final class EventSpliterator implements Spliterator<Event> {
+    // below this number of Event a window is not split
+    private static final long MIN_SPLIT = TimestampChunk.CAPACITY;
+
+    private long from;
+    private final long to;
+    private long[] block = new long[0];
+    private int blockSize;
+    private int position;
+    private boolean started;
+    private boolean lastBlock;
+    // the version of the column when the block was copied
+    private long version;
+
+    private EventSpliterator(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Event> action) {
+      if (position == blockSize && !fill()) {
+        return false;
+      }
+      action.accept(new Event(type, block[position++]));
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Event> action) {
+      while (position < blockSize || fill()) {
+        while (position < blockSize) {
+          action.accept(new Event(type, block[position++]));
+        }
+      }
+    }
+
+    @Override
+    public Spliterator<Event> trySplit() {
+      if (started || to - from < 1 || count(from, to) < 2 * MIN_SPLIT) {
+        return null;
+      }
+      long middle = from + (to - from) / 2;
+      EventSpliterator prefix = new EventSpliterator(from, middle);
+      from = middle + 1;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return (blockSize - position) + (lastBlock ? 0 : count(from, to));
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | NONNULL | CONCURRENT;
+    }
+
+    // copies the next block, false when the window is over
+    private boolean fill() {
+      if (lastBlock) {
+        return false;
+      }
+      started = true;
+      blockSize = 0;
+      position = 0;
+
+      lock.readLock().lock();
+      try {
+        version = TimestampColumn.this.version;
+        lastBlock = true;
+        copy:
+        for (int index = firstChunkWithLastAtLeast(from); index < chunks.size(); index++) {
+          TimestampChunk chunk = chunks.get(index);
+          for (int offset = blockSize == 0 ? chunk.lowerBound(from) : 0; offset < chunk.size;
+              offset++) {
+            long timestamp = chunk.get(offset);
+            if (timestamp > to) {
+              break copy;
+            }
+            if (blockSize >= TimestampChunk.CAPACITY && timestamp != block[blockSize - 1]) {
+              lastBlock = false;
+              break copy;
+            }
+            if (blockSize == block.length) {
+              block = Arrays.copyOf(block, Math.max(TimestampChunk.CAPACITY, 2 * blockSize));
+            }
+            block[blockSize++] = timestamp;
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+
+      if (blockSize > 0 && block[blockSize - 1] != Long.MAX_VALUE) {
+        from = block[blockSize - 1] + 1;
+      } else {
+        lastBlock = true;
+      }
+      return blockSize > 0;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package net.intelie.challenges;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+final class TypeDictionary {
+
+  // The types of a store kept sorted in a ConcurrentSkipListSet, next to the ConcurrentHashMap of
+  // the store, so the types that share a prefix are neighbours: finding them is a search for the
+  // prefix followed by a walk over the matches, instead of a scan of every key of the map. The
+  // stores add a type inside the computeIfAbsent that creates its structure and remove it inside
+  // the computeIfPresent that drops it, so the dictionary never misses a type of the map; a type
+  // may be seen in the dictionary a moment before its structure, its queries are then empty.
+  // The cost Big-O of operations is:
+  // add, remove: O(log T), T represents the number of types;
+  // withPrefix: O(log T) for the view, then O(1) for each type visited;
+  // matching: the same of withPrefix for the literal prefix of the pattern, plus the match of
+  // each type of that prefix against the pattern;
+
+  private final ConcurrentSkipListSet<String> types = new ConcurrentSkipListSet<>();
+
+  void add(String type) {
+    types.add(type);
+  }
+
+  void remove(String type) {
+    types.remove(type);
+  }
+
+  void clear() {
+    types.clear();
+  }
+
+  /**
+   * Read-only view, in order, of the types that start with the prefix.
+   */
+  NavigableSet<String> withPrefix(String prefix) {
+    String end = prefixEnd(prefix);
+    NavigableSet<String> view =
+        end == null ? types.tailSet(prefix, true) : types.subSet(prefix, true, end, false);
+    return Collections.unmodifiableNavigableSet(view);
+  }
+
+  /**
+   * The types, in order, matched by a glob pattern: '*' matches any sequence of characters, '?'
+   * matches one character, any other character matches itself. Only the types that start with
+   * the literal prefix of the pattern, given by withPrefix, are matched against it.
+   */
+  static NavigableSet<String> matching(String glob,
+      Function<String, ? extends Set<String>> withPrefix) {
+    int wildcard = 0;
+    while (wildcard < glob.length() && glob.charAt(wildcard) != '*'
+        && glob.charAt(wildcard) != '?') {
+      wildcard++;
+    }
+
+    Pattern pattern = compile(glob);
+    TreeSet<String> matches = new TreeSet<>();
+    for (String type : withPrefix.apply(glob.substring(0, wildcard))) {
+      if (pattern.matcher(type).matches()) {
+        matches.add(type);
+      }
+    }
+    return Collections.unmodifiableNavigableSet(matches);
+  }
+
+  // the least String greater than every String that starts with the prefix, null if there is none
+  private static String prefixEnd(String prefix) {
+    int last = prefix.length() - 1;
+    while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+      last--;
+    }
+    if (last < 0) {
+      return null;
+    }
+    return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+  }
+
+  private static Pattern compile(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*' || c == '?') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+}
@@ -0,0 +1,43 @@
+package net.intelie.challenges;
+
+public final class TypeHandle {
+
+  // A type resolved once by EventStore.handle, to insert the Event of that type without a String
+  // for each one: the handle holds the String of the type given the first time it was asked for,
+  // shared by every Event built from the handle. The store that gave the handle may also keep in
+  // it the structure of the type, so the inserts of the handle skip the lookup of the type in its
+  // maps (EventStoreMemory keeps the EventTimeline); the other stores look the String up, whose
+  // hash is computed once. A handle stays valid for the life of its store, removeAll of its type
+  // included, and it is only accepted by the store that gave it.
+
+  private final String type;
+  private final int id;
+  final Object owner;
+  // the structure of the type in the store of the handle, set and checked by that store, null
+  // until it resolves it
+  volatile Object resolved;
+
+  TypeHandle(String type, int id, Object owner) {
+    this.type = type;
+    this.id = id;
+    this.owner = owner;
+  }
+
+  public String type() {
+    return type;
+  }
+
+  /**
+   * A compact number of the type, dense from 0 and unique among the handles of the same store,
+   * for the callers that index their own tables by type. The stores find the structure of the
+   * type through the handle itself, not through this number.
+   */
+  public int id() {
+    return id;
+  }
+
+  @Override
+  public String toString() {
+    return "TypeHandle{type='" + type + "', id=" + id + "}";
+  }
+}
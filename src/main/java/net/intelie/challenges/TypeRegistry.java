@@ -0,0 +1,39 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class TypeRegistry {
+
+  // The TypeHandle of a store, one per type, each one with the next id of the store. The handle is
+  // created the first time its type is asked for and is never forgotten, so a handle kept by a
+  // producer stays valid after removeAll, and its type is the same String instance for every Event
+  // built from it. The registry grows with the number of types asked for, not with the number of
+  // Event, it is independent of the structures of the store: a type may have a handle and no
+  // Event, or Event and no handle.
+  // The cost Big-O of operations is:
+  // handle: O(1), a lookup in the ConcurrentHashMap, the first one of a type also creates it;
+  // check: O(1), no lookup at all;
+
+  private final ConcurrentHashMap<String, TypeHandle> handles = new ConcurrentHashMap<>();
+  private final AtomicInteger nextId = new AtomicInteger();
+
+  TypeHandle handle(String type) {
+    EventStoreArguments.checkType(type);
+
+    TypeHandle handle = handles.get(type);
+    if (handle == null) {
+      handle = handles.computeIfAbsent(type,
+          key -> new TypeHandle(key, nextId.getAndIncrement(), this));
+    }
+    return handle;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the handle is null or was given by another registry.
+   */
+  void check(TypeHandle handle) {
+    if (handle == null || handle.owner != this)
+      throw new IllegalArgumentException();
+  }
+}
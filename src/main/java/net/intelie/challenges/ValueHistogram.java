@@ -0,0 +1,120 @@
+package net.intelie.challenges;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ValueHistogram {
+
+  // A histogram of non-negative long values in the layout of HdrHistogram: the values below
+  // 2 * SUB_BUCKETS have a bucket each, above that every power of two is cut in SUB_BUCKETS
+  // buckets of equal width, so any value is kept with a relative error below 1 / SUB_BUCKETS
+  // (6.25%) in a fixed array of 2 * SUB_BUCKETS + 58 * SUB_BUCKETS counts, from a nanosecond to
+  // centuries. Recording is a few shifts and one increment of an AtomicLongArray, as the
+  // AtomicHistogram of HdrHistogram, no lock and no allocation; the readers sum the buckets.
+  // The percentiles answer the highest value of the bucket they fall in, never above the max.
+  // The cost Big-O of operations is:
+  // record: O(1);
+  // count, mean, valueAtPercentile: O(B), B represents the number of buckets, 960;
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+  // the power of two of the first value above the linear buckets
+  private static final int FIRST_MAGNITUDE = SUB_BUCKET_BITS + 1;
+  private static final int BUCKETS = LINEAR_BUCKETS + (63 - FIRST_MAGNITUDE) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  ValueHistogram() {}
+
+  /**
+   * @throws IllegalArgumentException if the value is negative.
+   */
+  public void record(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException();
+
+    counts.incrementAndGet(bucketOf(value));
+    sum.add(value);
+    if (value > max.get()) {
+      max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  public long count() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * @return the mean of the values recorded, 0 if there is none.
+   */
+  public double mean() {
+    long count = count();
+    return count == 0 ? 0 : (double) sum.sum() / count;
+  }
+
+  /**
+   * The value below which the percentage of the values recorded falls, with the precision of the
+   * buckets.
+   *
+   * @param percentile between 0 and 100.
+   * @return 0 if no value was recorded.
+   * @throws IllegalArgumentException if the percentile is outside 0..100.
+   */
+  public long valueAtPercentile(double percentile) {
+    if (!(percentile >= 0 && percentile <= 100))
+      throw new IllegalArgumentException();
+
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestOf(i), max());
+      }
+    }
+    return max();
+  }
+
+  static int bucketOf(long value) {
+    if (value < LINEAR_BUCKETS) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_BUCKETS + (magnitude - FIRST_MAGNITUDE) * SUB_BUCKETS + subBucket;
+  }
+
+  // the highest value kept in the bucket
+  static long highestOf(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    int magnitude = FIRST_MAGNITUDE + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+    long width = 1L << (magnitude - SUB_BUCKET_BITS);
+    long lowest = (long) (SUB_BUCKETS + subBucket) * width;
+    return lowest + (width - 1);
+  }
+}
@@ -0,0 +1,118 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class EventIngestorTest {
+
+  @Test
+  public void flushShouldMakeThePublishedEventVisible() throws Exception {
+    EventStoreMemory store = new EventStoreMemory();
+    try (EventIngestor sut = new EventIngestor(store, 4, 64)) {
+      int producers = 8;
+      int perProducer = 5_000;
+      List<Thread> threads = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        String type = "type_" + p % 3;
+        long base = p * (long) perProducer;
+        Thread thread = new Thread(() -> {
+          for (long i = base; i < base + perProducer; i++) {
+            sut.publish(new Event(type, i));
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      sut.flush();
+
+      long count = 0;
+      for (int t = 0; t < 3; t++) {
+        count += store.count("type_" + t, 0, Long.MAX_VALUE);
+      }
+      assertEquals(producers * perProducer, count);
+    }
+  }
+
+  @Test
+  public void flushShouldSeeTheEventPublishedByTheSameThread() throws Exception {
+    EventStoreMemory store = new EventStoreMemory();
+    try (EventIngestor sut = new EventIngestor(store, 2, 8)) {
+      for (long i = 0; i < 100; i++) {
+        sut.publish(new Event("any_type", i));
+        sut.flush();
+        assertEquals(OptionalLong.of(i), store.last("any_type", 0, Long.MAX_VALUE));
+      }
+    }
+  }
+
+  @Test
+  public void closeShouldInsertThePublishedEventAndRefuseNewOnes() throws Exception {
+    EventStoreMemory store = new EventStoreMemory();
+    EventIngestor sut = new EventIngestor(store, 2, 1024);
+    for (long i = 0; i < 1000; i++) {
+      sut.publish(new Event("any_type", i));
+    }
+    sut.close();
+
+    assertEquals(1000, store.count("any_type", 0, Long.MAX_VALUE));
+    try {
+      sut.publish(new Event("any_type", 1l));
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void everyPublishThatReturnedShouldBeInsertedWhenCloseRacesWithIt() throws Exception {
+    for (int round = 0; round < 20; round++) {
+      EventStoreMemory store = new EventStoreMemory();
+      EventIngestor sut = new EventIngestor(store, 2, 16);
+      AtomicLong published = new AtomicLong();
+      List<Thread> threads = new ArrayList<>();
+      for (int p = 0; p < 4; p++) {
+        Thread thread = new Thread(() -> {
+          try {
+            for (long i = 0; ; i++) {
+              sut.publish(new Event("any_type", i));
+              published.incrementAndGet();
+            }
+          } catch (IllegalStateException closed) {
+            // the ingestor was closed, the Event of this call was not published
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+
+      Thread.sleep(2);
+      sut.close();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertEquals(published.get(), store.count("any_type", 0, Long.MAX_VALUE));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void flushShouldThrowsWhenTheStoreFailed() throws Exception {
+    EventStoreOffHeap store = new EventStoreOffHeap();
+    store.close();
+    EventIngestor sut = new EventIngestor(store, 1, 16);
+    sut.publish(new Event("any_type", 1l));
+    sut.flush();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfShardsIsNotPositive() {
+    new EventIngestor(new EventStoreMemory(), 0, 16);
+  }
+}
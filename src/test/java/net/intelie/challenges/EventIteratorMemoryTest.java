@@ -3,7 +3,7 @@ package net.intelie.challenges;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -64,7 +64,7 @@ public class EventIteratorMemoryTest {
 
     sut.moveNext();
 
-    assertEquals(event, sut.current());
+    assertSame(event, sut.current());
   }
 
   @Test
@@ -75,7 +75,7 @@ public class EventIteratorMemoryTest {
     sut.moveNext();
     sut.moveNext();
 
-    assertEquals(secondElement, sut.current());
+    assertSame(secondElement, sut.current());
   }
 
   @Test(expected = IllegalStateException.class)
@@ -97,10 +97,26 @@ public class EventIteratorMemoryTest {
     buildIteratorWithElements();
     sut.moveNext();
     Event event = sut.current();
+    Event secondElement = listEvents.get(1);
+
+    sut.remove();
+
+    assertEquals(false, listEvents.contains(event));
+    assertEquals(true, sut.moveNext());
+    assertSame(secondElement, sut.current());
+  }
 
+  @Test
+  public void removerShouldKeepTheRemovedElementAsCurrentUntilMoveNext() {
+    buildIteratorWithElements();
+    sut.moveNext();
+    Event event = sut.current();
+
+    sut.remove();
     sut.remove();
 
-    assertNotEquals(event, sut.current());
+    assertSame(event, sut.current());
+    assertEquals(4, listEvents.size());
   }
 
   @Test(expected = IllegalStateException.class)
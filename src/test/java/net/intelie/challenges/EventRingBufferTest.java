@@ -0,0 +1,77 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class EventRingBufferTest {
+
+  @Test
+  public void shouldRoundTheCapacityUpToAPowerOfTwo() {
+    assertEquals(1, new EventRingBuffer(1).capacity());
+    assertEquals(8, new EventRingBuffer(5).capacity());
+    assertEquals(8, new EventRingBuffer(8).capacity());
+  }
+
+  @Test
+  public void shouldKeepTheOrderAndRefuseWhenFull() {
+    EventRingBuffer sut = new EventRingBuffer(4);
+    for (int i = 0; i < 4; i++) {
+      assertEquals(true, sut.offer(new Event("any_type", i)));
+    }
+    assertEquals(false, sut.offer(new Event("any_type", 4)));
+    assertEquals(4, sut.size());
+
+    assertEquals(0l, sut.poll().timestamp());
+    assertEquals(true, sut.offer(new Event("any_type", 5)));
+    List<Long> timestamps = new ArrayList<>();
+    for (Event event = sut.poll(); event != null; event = sut.poll()) {
+      timestamps.add(event.timestamp());
+    }
+    assertEquals(Arrays.asList(1l, 2l, 3l, 5l), timestamps);
+  }
+
+  @Test
+  public void shouldDeliverEachEventOnceToManyProducers() throws Exception {
+    EventRingBuffer sut = new EventRingBuffer(64);
+    int producers = 4;
+    int perProducer = 20_000;
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      long base = p * (long) perProducer;
+      Thread thread = new Thread(() -> {
+        for (long i = base; i < base + perProducer; i++) {
+          Event event = new Event("any_type", i);
+          while (!sut.offer(event)) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    Set<Long> seen = new HashSet<>();
+    long[] lastOfProducer = new long[producers];
+    Arrays.fill(lastOfProducer, -1);
+    while (seen.size() < producers * perProducer) {
+      Event event = sut.poll();
+      if (event == null) {
+        Thread.yield();
+        continue;
+      }
+      int producer = (int) (event.timestamp() / perProducer);
+      assertEquals(true, event.timestamp() > lastOfProducer[producer]);
+      lastOfProducer[producer] = event.timestamp();
+      assertEquals(true, seen.add(event.timestamp()));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(null, sut.poll());
+  }
+}
@@ -0,0 +1,368 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventStoreColumnarTest {
+
+  private EventStore sut = null;
+
+  @Before
+  public void init() {
+    sut = new EventStoreColumnar();
+  }
+
+  private List<Long> timestampsOf(EventIterator iterator) {
+    List<Long> timestamps = new ArrayList<>();
+    while (iterator.moveNext()) {
+      timestamps.add(iterator.current().timestamp());
+    }
+    return timestamps;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfEventIsNotProvide() {
+    sut.insert(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfEndTimeIsBeforeStartTime() {
+    sut.query("any_type", 10, 5);
+  }
+
+  @Test
+  public void shouldReturnAnEqualEventBuiltFromTheColumn() {
+    Event event = new Event("any_type", 5l);
+    sut.insert(event);
+
+    EventIterator iterator = sut.query("any_type", 5, 5);
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals(event, iterator.current());
+    assertNotSame(event, iterator.current());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void shouldReturnEmptyIfIncorrectTypeIsProvided() {
+    sut.insert(new Event("any_type", 5l));
+
+    assertEquals(false, sut.query("Incorrect_type", 0, 10).moveNext());
+  }
+
+  @Test
+  public void shouldReturnEventsOrderedByTimestampAcrossManyChunks() {
+    List<Long> expected = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 5 * TimestampChunk.CAPACITY; i++) {
+      long timestamp = random.nextInt(1_000_000);
+      expected.add(timestamp);
+      sut.insert(new Event("any_type", timestamp));
+    }
+    Collections.sort(expected);
+
+    assertEquals(expected, timestampsOf(sut.query("any_type", 0, 1_000_000)));
+  }
+
+  @Test
+  public void insertAllShouldMergeTheBatchIntoTheColumn() {
+    sut.insert(new Event("any_type", 15l));
+    List<Event> batch = new ArrayList<>();
+    for (long i = 20; i >= 10; i--) {
+      batch.add(new Event("any_type", i));
+    }
+    batch.add(new Event("other_type", 1l));
+
+    sut.insertAll(batch);
+
+    List<Long> timestamps = timestampsOf(sut.query("any_type", 0, 100));
+    assertEquals(12, timestamps.size());
+    assertEquals(Long.valueOf(10), timestamps.get(0));
+    assertEquals(Long.valueOf(15), timestamps.get(5));
+    assertEquals(Long.valueOf(15), timestamps.get(6));
+    assertEquals(Long.valueOf(20), timestamps.get(11));
+    assertEquals(1, timestampsOf(sut.query("other_type", 0, 100)).size());
+  }
+
+  @Test
+  public void shouldReturnOnlyEventsInsideTheInterval() {
+    for (long i = 0; i < 100; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    List<Long> timestamps = timestampsOf(sut.query("any_type", 10, 19));
+
+    assertEquals(10, timestamps.size());
+    assertEquals(Long.valueOf(10), timestamps.get(0));
+    assertEquals(Long.valueOf(19), timestamps.get(9));
+  }
+
+  @Test
+  public void shouldReturnRepeatedTimestamps() {
+    sut.insert(new Event("any_type", 5l));
+    sut.insert(new Event("any_type", 5l));
+    sut.insert(new Event("any_type", 5l));
+
+    assertEquals(3, timestampsOf(sut.query("any_type", 5, 5)).size());
+  }
+
+  @Test
+  public void iteratorRemoveShouldDeleteTheEventFromTheStore() {
+    for (long i = 0; i < 3 * TimestampChunk.CAPACITY; i++) {
+      sut.insert(new Event("any_type", i / 2));
+    }
+
+    EventIterator iterator = sut.query("any_type", 0, Long.MAX_VALUE);
+    int visited = 0;
+    while (iterator.moveNext()) {
+      if (visited++ % 2 == 0) {
+        iterator.remove();
+      }
+    }
+
+    assertEquals(3 * TimestampChunk.CAPACITY, visited);
+    List<Long> timestamps = timestampsOf(sut.query("any_type", 0, Long.MAX_VALUE));
+    assertEquals(3 * TimestampChunk.CAPACITY / 2, timestamps.size());
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(Long.valueOf(i), timestamps.get(i));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void currentShouldThrowsIfMoveNextIsNotCall() {
+    sut.insert(new Event("any_type", 5l));
+
+    sut.query("any_type", 0, 10).current();
+  }
+
+  @Test
+  public void openIteratorShouldNotReturnEventsRemovedAheadOfTheCursor() {
+    for (long i = 0; i < 10; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    EventIterator iterator = sut.query("any_type", 0, 9);
+    assertEquals(true, iterator.moveNext());
+    EventIterator remover = sut.query("any_type", 1, 1);
+    remover.moveNext();
+    remover.remove();
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals(2, iterator.current().timestamp());
+  }
+
+  @Test
+  public void shouldRemoveAllEventsOfTheType() {
+    sut.insert(new Event("type_1", 5l));
+    sut.insert(new Event("type_2", 5l));
+
+    sut.removeAll("type_1");
+
+    assertEquals(false, sut.query("type_1", 0, 10).moveNext());
+    assertEquals(true, sut.query("type_2", 0, 10).moveNext());
+  }
+
+  @Test
+  public void removeRangeShouldDropTheChunksInsideTheRange() {
+    int events = 5 * TimestampChunk.CAPACITY;
+    for (long i = 0; i < events; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    long removed = sut.removeRange("any_type", 100, events - 101);
+
+    assertEquals(events - 200, removed);
+    List<Long> timestamps = timestampsOf(sut.query("any_type", 0, Long.MAX_VALUE));
+    assertEquals(200, timestamps.size());
+    assertEquals(Long.valueOf(99), timestamps.get(99));
+    assertEquals(Long.valueOf(events - 100), timestamps.get(100));
+  }
+
+  @Test
+  public void openIteratorShouldSkipTheRemovedRange() {
+    for (long i = 0; i < 10; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    EventIterator iterator = sut.query("any_type", 0, 9);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(3, sut.removeRange("any_type", 1, 3));
+
+    assertEquals(0, iterator.current().timestamp());
+    assertEquals(true, iterator.moveNext());
+    assertEquals(4, iterator.current().timestamp());
+  }
+
+  @Test
+  public void countFirstAndLastShouldAnswerFromTheChunks() {
+    int events = 3 * TimestampChunk.CAPACITY;
+    for (long i = 0; i < events; i++) {
+      sut.insert(new Event("any_type", 2 * i));
+    }
+
+    assertEquals(events - 100, sut.count("any_type", 100, 2 * events - 101));
+    assertEquals(OptionalLong.of(100), sut.first("any_type", 99, 2 * events));
+    assertEquals(OptionalLong.of(2 * events - 102), sut.last("any_type", 0, 2 * events - 101));
+    assertEquals(OptionalLong.empty(), sut.first("any_type", 101, 101));
+    assertEquals(OptionalLong.empty(), sut.last("any_type", 2 * events, 3 * events));
+    assertEquals(0, sut.count("missing_type", 0, 10));
+  }
+
+  @Test
+  public void histogramShouldCountTheEventsOfEachBucket() {
+    for (long i = 0; i < 3 * TimestampChunk.CAPACITY; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    long[] histogram = sut.histogram("any_type", 0, Long.MAX_VALUE, 2);
+
+    assertEquals(3 * TimestampChunk.CAPACITY, histogram[0]);
+    assertEquals(0, histogram[1]);
+    assertEquals(TimestampChunk.CAPACITY,
+        sut.histogram("any_type", 0, 3 * TimestampChunk.CAPACITY - 1, 3)[2]);
+  }
+
+  @Test
+  public void queryAllShouldMergeTheTypesOrderedByTimestamp() {
+    sut.insert(new Event("type_1", 3l));
+    sut.insert(new Event("type_2", 1l));
+    sut.insert(new Event("type_1", 2l));
+
+    assertEquals(Arrays.asList(1l, 2l, 3l),
+        timestampsOf(sut.queryAll(Arrays.asList("type_1", "type_2"), 0, 10)));
+  }
+
+  @Test
+  public void removeAllWithPrefixShouldRemoveOnlyTheTypesOfThePrefix() {
+    sut.insert(new Event("rig42.pump.pressure", 3l));
+    sut.insert(new Event("rig43.pump.pressure", 2l));
+
+    sut.removeAllWithPrefix("rig42.");
+
+    assertEquals(Arrays.asList("rig43.pump.pressure"),
+        Arrays.asList(sut.typesMatching("rig*").toArray()));
+    assertEquals(Arrays.asList(2l), timestampsOf(sut.queryGlob("*.pressure", 0, 10)));
+  }
+
+  @Test
+  public void scanShouldCollectTheWindow() {
+    for (long i = 0; i < 100; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    assertEquals(Long.valueOf(45 + 46 + 47),
+        sut.scan("any_type", 45, 47, Collectors.summingLong(Event::timestamp)));
+  }
+
+  @Test
+  public void streamShouldGiveTheRepeatedTimestampsAcrossTheBlocks() {
+    // 3 chunks of the same timestamp in the middle, a block never splits them
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      batch.add(new Event("any_type", i));
+    }
+    for (int i = 0; i < 10_000; i++) {
+      batch.add(new Event("any_type", 5_000));
+    }
+    sut.insertAll(batch);
+
+    List<Long> timestamps = sut.stream("any_type", 0, 9_999)
+        .map(Event::timestamp)
+        .collect(Collectors.toList());
+
+    assertEquals(20_000, timestamps.size());
+    for (int i = 1; i < timestamps.size(); i++) {
+      assertEquals(true, timestamps.get(i - 1) <= timestamps.get(i));
+    }
+    assertEquals(10_001, sut.stream("any_type", 5_000, 5_000).count());
+  }
+
+  @Test
+  public void parallelStreamShouldKeepTheOrder() {
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      batch.add(new Event("any_type", i));
+    }
+    sut.insertAll(batch);
+
+    assertEquals(true, sut.stream("any_type", 0, 49_999).spliterator().trySplit() != null);
+
+    List<Long> timestamps = sut.stream("any_type", 10, 49_989)
+        .parallel()
+        .map(Event::timestamp)
+        .collect(Collectors.toList());
+
+    assertEquals(49_980, timestamps.size());
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(Long.valueOf(10 + i), timestamps.get(i));
+    }
+    assertEquals(0, sut.stream("missing_type", 0, 10).count());
+  }
+
+  @Test
+  public void queryConfinedShouldGiveTheEventOfQueryAndRemoveThem() throws Exception {
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      batch.add(new Event("any_type", i / 2));
+    }
+    sut.insertAll(batch);
+
+    assertEquals(timestampsOf(sut.query("any_type", 100, 4_899)),
+        timestampsOf(sut.queryConfined("any_type", 100, 4_899)));
+
+    try (EventIterator iterator = sut.queryConfined("any_type", 0, 4_999)) {
+      while (iterator.moveNext()) {
+        if (iterator.current().timestamp() >= 2_500) {
+          iterator.remove();
+          iterator.remove();
+        }
+      }
+    }
+    assertEquals(5_000, sut.count("any_type", 0, 4_999));
+    assertEquals(false, sut.queryConfined("missing_type", 0, 10).moveNext());
+  }
+
+  @Test
+  public void queryConfinedShouldNotGiveTheEventRemovedAfterItsBlockWasRead() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      sut.insert(new Event("any_type", i));
+      sut.insert(new Event("any_type", i));
+    }
+
+    try (EventIterator iterator = sut.queryConfined("any_type", 0, 99)) {
+      assertEquals(true, iterator.moveNext());
+      assertEquals(true, iterator.moveNext());
+      assertEquals(true, iterator.moveNext());
+      assertEquals(1, iterator.current().timestamp());
+      sut.removeRange("any_type", 2, 97);
+      sut.insert(new Event("any_type", 1l));
+
+      assertEquals(Arrays.asList(1l, 1l, 98l, 98l, 99l, 99l), timestampsOf(iterator));
+    }
+  }
+
+  @Test
+  public void insertOfHandleShouldStoreTheTimestamp() {
+    TypeHandle handle = sut.handle("any_type");
+    sut.insert(handle, 7l);
+    sut.removeAll("any_type");
+    sut.insert(handle, 5l);
+    sut.insert(handle, 3l);
+
+    assertEquals(Arrays.asList(3l, 5l), timestampsOf(sut.query("any_type", 0, 10)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void insertOfHandleShouldThrowsIfHandleIsNotProvided() {
+    sut.insert((TypeHandle) null, 7l);
+  }
+}
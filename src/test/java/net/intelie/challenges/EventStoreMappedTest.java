@@ -0,0 +1,159 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventStoreMappedTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+  private EventStoreMapped sut = null;
+
+  @Before
+  public void init() throws IOException {
+    directory = folder.getRoot().toPath().resolve("store");
+    sut = new EventStoreMapped(directory);
+  }
+
+  @After
+  public void release() {
+    sut.close();
+  }
+
+  private EventStoreMapped reopen() throws IOException {
+    sut.close();
+    sut = new EventStoreMapped(directory);
+    return sut;
+  }
+
+  private long countSegments() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files.filter(file -> file.toString().endsWith(".seg")).count();
+    }
+  }
+
+  @Test
+  public void shouldAddEventIntoStore() {
+    Event event = new Event("any_type", 5l);
+    sut.insert(event);
+
+    EventIterator iterator = sut.query("any_type", 5, 5);
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals(event, iterator.current());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void shouldKeepTheEventsAfterReopen() throws IOException {
+    sut.insert(new Event("rig42.pump.pressure", 30l));
+    sut.insert(new Event("rig42.pump.pressure", 10l));
+    sut.insert(new Event("tipo/a\u00e7\u00e3o", 20l));
+
+    reopen();
+
+    EventIterator iterator = sut.query("rig42.pump.pressure", 0, 100);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(10, iterator.current().timestamp());
+    assertEquals(true, iterator.moveNext());
+    assertEquals(30, iterator.current().timestamp());
+    assertEquals(false, iterator.moveNext());
+
+    iterator = sut.query("tipo/a\u00e7\u00e3o", 0, 100);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(new Event("tipo/a\u00e7\u00e3o", 20l), iterator.current());
+  }
+
+  @Test
+  public void shouldKeepSegmentsOrderedAfterReopen() throws IOException {
+    // the full segment of even timestamps is split by the odd ones
+    long events = 2 * MappedTimestampChunk.CAPACITY + 20;
+    for (long i = 0; i < events; i += 2) {
+      sut.insert(new Event("any_type", i));
+    }
+    for (long i = 1; i < 20; i += 2) {
+      sut.insert(new Event("any_type", i));
+    }
+    for (long i = events - 1; i > events - 20; i -= 2) {
+      sut.insert(new Event("any_type", i));
+    }
+    assertEquals(true, countSegments() > 1);
+
+    reopen();
+
+    EventIterator iterator = sut.query("any_type", 0, events);
+    long previous = -1;
+    long found = 0;
+    while (iterator.moveNext()) {
+      assertEquals(true, iterator.current().timestamp() > previous);
+      previous = iterator.current().timestamp();
+      found++;
+    }
+    assertEquals(events / 2 + 20, found);
+  }
+
+  @Test
+  public void shouldKeepRemovalsAfterReopen() throws IOException {
+    sut.insert(new Event("any_type", 5l));
+    sut.insert(new Event("any_type", 6l));
+    EventIterator iterator = sut.query("any_type", 5, 5);
+    iterator.moveNext();
+    iterator.remove();
+
+    reopen();
+
+    iterator = sut.query("any_type", 0, 10);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(6, iterator.current().timestamp());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void removeAllShouldDeleteTheSegmentsOfTheType() throws IOException {
+    sut.insert(new Event("type_1", 5l));
+    sut.insert(new Event("type_2", 5l));
+
+    sut.removeAll("type_1");
+
+    assertEquals(1, countSegments());
+    reopen();
+    assertEquals(false, sut.query("type_1", 0, 10).moveNext());
+    assertEquals(true, sut.query("type_2", 0, 10).moveNext());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldThrowsIfTheStoreIsUsedAfterClose() {
+    sut.close();
+
+    sut.query("any_type", 0, 10);
+  }
+
+  @Test
+  public void removeRangeShouldDeleteTheSegmentsInsideTheRange() throws IOException {
+    long events = 2 * MappedTimestampChunk.CAPACITY + 10;
+    for (long i = 0; i < events; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+    assertEquals(3, countSegments());
+
+    sut.removeRange("any_type", 0, 2 * MappedTimestampChunk.CAPACITY - 1);
+
+    assertEquals(1, countSegments());
+    EventIterator iterator = reopen().query("any_type", 0, Long.MAX_VALUE);
+    for (long i = 2 * MappedTimestampChunk.CAPACITY; i < events; i++) {
+      assertEquals(true, iterator.moveNext());
+      assertEquals(i, iterator.current().timestamp());
+    }
+    assertEquals(false, iterator.moveNext());
+  }
+}
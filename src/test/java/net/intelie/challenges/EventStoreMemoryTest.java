@@ -3,7 +3,21 @@ package net.intelie.challenges;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.management.ManagementFactory;
+import javax.management.Attribute;
+import javax.management.ObjectName;
+import java.util.stream.Collectors;
 import org.junit.Before;
 
 public class EventStoreMemoryTest {
@@ -40,7 +54,7 @@ public class EventStoreMemoryTest {
     EventIterator iteratorEvents = sut.query(event.type(), event.timestamp(), event.timestamp());
 
     assertEquals(true, iteratorEvents.moveNext());
-    assertEquals(event, iteratorEvents.current());
+    assertSame(event, iteratorEvents.current());
   }
 
   @Test
@@ -52,10 +66,10 @@ public class EventStoreMemoryTest {
 
     EventIterator iteratorEvents = sut.query(event1.type(), event1.timestamp(), event1.timestamp());
     assertEquals(true, iteratorEvents.moveNext());
-    assertEquals(event1, iteratorEvents.current());
+    assertSame(event1, iteratorEvents.current());
 
     assertEquals(true, iteratorEvents.moveNext());
-    assertEquals(event2, iteratorEvents.current());
+    assertSame(event2, iteratorEvents.current());
   }
 
   @Test
@@ -66,13 +80,13 @@ public class EventStoreMemoryTest {
 
     EventIterator iteratorEvents = sut.query(event1.type(), event1.timestamp(), event1.timestamp());
     assertEquals(true, iteratorEvents.moveNext());
-    assertEquals(event1, iteratorEvents.current());
+    assertSame(event1, iteratorEvents.current());
 
     assertEquals(false, iteratorEvents.moveNext());
 
     iteratorEvents = sut.query(event2.type(), event2.timestamp(), event2.timestamp());
     assertEquals(true, iteratorEvents.moveNext());
-    assertEquals(event2, iteratorEvents.current());
+    assertSame(event2, iteratorEvents.current());
 
     assertEquals(false, iteratorEvents.moveNext());
   }
@@ -121,6 +135,80 @@ public class EventStoreMemoryTest {
     assertEquals(true, iteratorEvents.moveNext());
   }
 
+  @Test
+  public void shouldReturnEventsOrderedByTimestampEvenIfInsertedOutOfOrder() {
+    String eventType = "any_type";
+    Event event1 = new Event(eventType, 30l);
+    Event event2 = new Event(eventType, 10l);
+    Event event3 = new Event(eventType, 20l);
+    Event event4 = new Event(eventType, 40l);
+
+    sut.insert(event1);
+    sut.insert(event2);
+    sut.insert(event3);
+    sut.insert(event4);
+
+    EventIterator iteratorEvents = sut.query(eventType, 10, 30);
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event2, iteratorEvents.current());
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event3, iteratorEvents.current());
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event1, iteratorEvents.current());
+    assertEquals(false, iteratorEvents.moveNext());
+  }
+
+  @Test
+  public void openIteratorShouldIgnoreEventsInsertedBehindTheCursor() {
+    String eventType = "any_type";
+    Event event1 = new Event(eventType, 10l);
+    Event event2 = new Event(eventType, 20l);
+    sut.insert(event1);
+    sut.insert(event2);
+
+    EventIterator iteratorEvents = sut.query(eventType, 0, 100);
+    assertEquals(true, iteratorEvents.moveNext());
+    assertEquals(true, iteratorEvents.moveNext());
+    sut.insert(new Event(eventType, 5l));
+
+    assertSame(event2, iteratorEvents.current());
+    assertEquals(false, iteratorEvents.moveNext());
+  }
+
+  @Test
+  public void insertAllShouldAddEachEventInYourGroupOrderedByTimestamp() {
+    Event event1 = new Event("type_1", 20l);
+    Event event2 = new Event("type_2", 5l);
+    Event event3 = new Event("type_1", 10l);
+    Event event4 = new Event("type_1", 20l);
+
+    sut.insertAll(Arrays.asList(event1, event2, event3, event4));
+
+    EventIterator iteratorEvents = sut.query("type_1", 0, 100);
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event3, iteratorEvents.current());
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event1, iteratorEvents.current());
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event4, iteratorEvents.current());
+    assertEquals(false, iteratorEvents.moveNext());
+
+    iteratorEvents = sut.query("type_2", 0, 100);
+    assertEquals(true, iteratorEvents.moveNext());
+    assertSame(event2, iteratorEvents.current());
+    assertEquals(false, iteratorEvents.moveNext());
+  }
+
+  @Test
+  public void insertAllShouldNotStoreAnythingIfAnEventIsNotProvided() {
+    try {
+      sut.insertAll(Arrays.asList(new Event("any_type", 5l), null));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals(false, sut.query("any_type", 0, 10).moveNext());
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void shouldThrowsIfTypeIsNotProviderIntoQuery() {
     Event event = addEventIntoSut();
@@ -157,12 +245,12 @@ public class EventStoreMemoryTest {
     EventIterator iterator =
         sut.query(eventToRemove.type(), eventToRemove.timestamp(), eventToRemove.timestamp());
     assertEquals(true, iterator.moveNext());
-    assertEquals(eventToRemove, iterator.current());
+    assertSame(eventToRemove, iterator.current());
 
     iterator = sut.query(eventCanNotBeRemove.type(), eventCanNotBeRemove.timestamp(),
         eventCanNotBeRemove.timestamp());
     assertEquals(true, iterator.moveNext());
-    assertEquals(eventCanNotBeRemove, iterator.current());
+    assertSame(eventCanNotBeRemove, iterator.current());
 
     sut.removeAll(eventToRemove.type());
     iterator =
@@ -173,10 +261,32 @@ public class EventStoreMemoryTest {
     iterator = sut.query(eventCanNotBeRemove.type(), eventCanNotBeRemove.timestamp(),
         eventCanNotBeRemove.timestamp());
     assertEquals(true, iterator.moveNext());
-    assertEquals(eventCanNotBeRemove, iterator.current());
+    assertSame(eventCanNotBeRemove, iterator.current());
   }
 
 
+  @Test
+  public void iteratorRemoveShouldDeleteTheEventFromTheStore() {
+    String eventType = "any_type";
+    for (int i = 0; i < 10; i++) {
+      sut.insert(new Event(eventType, i));
+    }
+
+    EventIterator iterator = sut.query(eventType, 0, 9);
+    while (iterator.moveNext()) {
+      if (iterator.current().timestamp() % 2 == 0) {
+        iterator.remove();
+      }
+    }
+
+    iterator = sut.query(eventType, 0, 9);
+    for (int i = 1; i < 10; i += 2) {
+      assertEquals(true, iterator.moveNext());
+      assertEquals(i, iterator.current().timestamp());
+    }
+    assertEquals(false, iterator.moveNext());
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void shouldThrowsIfTypeIsNotProviderInToRemove() {
     addEventIntoSut();
@@ -191,5 +301,901 @@ public class EventStoreMemoryTest {
     sut.removeAll("");
   }
 
+  @Test
+  public void shouldReturnEventsOfManyPartitionsInOrder() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 99; i >= 0; i--) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    EventIterator iterator = partitioned.query("any_type", 15, 84);
+    for (int i = 15; i <= 84; i++) {
+      assertEquals(true, iterator.moveNext());
+      assertEquals(i, iterator.current().timestamp());
+    }
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void retentionShouldDropThePartitionsOlderThanTheMaxAge() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    long dropped =
+        partitioned.enforceRetention(RetentionPolicy.maxAge(50, TimeUnit.MILLISECONDS), 105);
+
+    // the cutoff 55 is in the middle of the partition [50, 60), which is kept whole
+    assertEquals(50, dropped);
+    EventIterator iterator = partitioned.query("any_type", 0, 99);
+    for (int i = 50; i < 100; i++) {
+      assertEquals(true, iterator.moveNext());
+      assertEquals(i, iterator.current().timestamp());
+    }
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void retentionShouldKeepAtLeastTheMaxEventsPerType() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i++) {
+      partitioned.insert(new Event("big_type", i));
+    }
+    partitioned.insert(new Event("small_type", 0));
+
+    long dropped = partitioned.enforceRetention(RetentionPolicy.maxEventsPerType(25), 0);
+
+    assertEquals(70, dropped);
+    EventIterator iterator = partitioned.query("big_type", 0, 99);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(70, iterator.current().timestamp());
+    iterator = partitioned.query("small_type", 0, 99);
+    assertEquals(true, iterator.moveNext());
+  }
+
+  @Test
+  public void openIteratorShouldStopOnADroppedPartition() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 20; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    EventIterator iterator = partitioned.query("any_type", 0, 19);
+    assertEquals(true, iterator.moveNext());
+    partitioned.enforceRetention(RetentionPolicy.maxAge(0, TimeUnit.MILLISECONDS), 10);
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals(10, iterator.current().timestamp());
+  }
+
+  @Test
+  public void retentionEnforcerShouldDropTheOldEventsInBackground() throws Exception {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    long now = System.currentTimeMillis();
+    partitioned.insert(new Event("any_type", now - TimeUnit.HOURS.toMillis(2)));
+    partitioned.insert(new Event("any_type", now));
+
+    try (RetentionEnforcer enforcer = new RetentionEnforcer(partitioned,
+        RetentionPolicy.maxAge(1, TimeUnit.HOURS), 10, TimeUnit.MILLISECONDS)) {
+      while (enforcer.droppedEvents() == 0) {
+        Thread.sleep(10);
+      }
+    }
+
+    EventIterator iterator = partitioned.query("any_type", 0, Long.MAX_VALUE);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(now, iterator.current().timestamp());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void retentionEnforcerShouldKeepRunningAfterAPassFailed() throws Exception {
+    AtomicInteger passes = new AtomicInteger();
+    EventStoreMemory failing = new EventStoreMemory(10) {
+      @Override
+      public long enforceRetention(RetentionPolicy policy) {
+        if (passes.incrementAndGet() == 1)
+          throw new IllegalStateException("first pass");
+
+        return super.enforceRetention(policy);
+      }
+    };
+    long now = System.currentTimeMillis();
+    failing.insert(new Event("any_type", now - TimeUnit.HOURS.toMillis(2)));
+
+    try (RetentionEnforcer enforcer = new RetentionEnforcer(failing,
+        RetentionPolicy.maxAge(1, TimeUnit.HOURS), 10, TimeUnit.MILLISECONDS)) {
+      while (enforcer.droppedEvents() == 0) {
+        Thread.sleep(10);
+      }
+      assertEquals("first pass", enforcer.lastFailure().getMessage());
+    }
+  }
+
+  @Test
+  public void countShouldNotOverflowOnThePartitionThatReachesTheLastTimestamp() {
+    EventStoreMemory partitioned = new EventStoreMemory();
+    for (int i = 100; i > 90; i--) {
+      partitioned.insert(new Event("any_type", Long.MAX_VALUE - i));
+    }
+
+    assertEquals(5, partitioned.count("any_type", Long.MAX_VALUE - 95, Long.MAX_VALUE));
+    assertEquals(6, partitioned.count("any_type", 0, Long.MAX_VALUE - 95));
+    assertEquals(10, partitioned.count("any_type", 0, Long.MAX_VALUE));
+    assertEquals(Arrays.toString(new long[] {5, 5}), Arrays.toString(
+        partitioned.histogram("any_type", Long.MAX_VALUE - 100, Long.MAX_VALUE - 91, 2)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfPartitionWidthIsNotPositive() {
+    new EventStoreMemory(0);
+  }
+
+  @Test
+  public void removeRangeShouldRemoveOnlyTheEventsInsideTheRange() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i++) {
+      partitioned.insert(new Event("any_type", i));
+      partitioned.insert(new Event("other_type", i));
+    }
+
+    long removed = partitioned.removeRange("any_type", 15, 84);
+
+    assertEquals(70, removed);
+    EventIterator iterator = partitioned.query("any_type", 0, 99);
+    for (int i = 0; i < 100; i++) {
+      if (i < 15 || i > 84) {
+        assertEquals(true, iterator.moveNext());
+        assertEquals(i, iterator.current().timestamp());
+      }
+    }
+    assertEquals(false, iterator.moveNext());
+    assertEquals(0, partitioned.removeRange("any_type", 15, 84));
+    assertEquals(0, partitioned.removeRange("missing_type", 0, 99));
+  }
+
+  @Test
+  public void openIteratorShouldNotReturnEventsOfARemovedRange() {
+    for (int i = 0; i < 10; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    EventIterator iterator = sut.query("any_type", 0, 9);
+    assertEquals(true, iterator.moveNext());
+    sut.removeRange("any_type", 1, 3);
+
+    assertEquals(0, iterator.current().timestamp());
+    assertEquals(true, iterator.moveNext());
+    assertEquals(4, iterator.current().timestamp());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void removeRangeShouldThrowsIfEndTimeIsBeforeStartTime() {
+    sut.removeRange("any_type", 10, 5);
+  }
+
+  @Test
+  public void countShouldAnswerTheNumberOfEventsInsideTheInterval() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+    partitioned.insert(new Event("any_type", 50));
+
+    assertEquals(72, partitioned.count("any_type", 15, 85));
+    assertEquals(101, partitioned.count("any_type", 0, Long.MAX_VALUE));
+    assertEquals(0, partitioned.count("any_type", 100, 200));
+    assertEquals(0, partitioned.count("missing_type", 0, 100));
+  }
+
+  @Test
+  public void countShouldAnswerFromTheSlotsOfAWidePartition() {
+    for (int i = 0; i < 10_000; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+    sut.removeRange("any_type", 5000, 5099);
+
+    assertEquals(9900, sut.count("any_type", 0, 60_000));
+    assertEquals(8680, sut.count("any_type", 123, 8902));
+    assertEquals(2, sut.count("any_type", 4999, 5100));
+  }
+
+  @Test
+  public void firstAndLastShouldAnswerTheLimitsOfTheInterval() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i += 7) {
+      partitioned.insert(new Event("any_type", i));
+    }
+    partitioned.removeRange("any_type", 30, 59);
+
+    assertEquals(OptionalLong.of(21), partitioned.first("any_type", 15, 85));
+    assertEquals(OptionalLong.of(84), partitioned.last("any_type", 15, 85));
+    assertEquals(OptionalLong.of(63), partitioned.first("any_type", 29, 99));
+    assertEquals(OptionalLong.of(28), partitioned.last("any_type", 0, 62));
+    assertEquals(OptionalLong.empty(), partitioned.first("any_type", 29, 62));
+    assertEquals(OptionalLong.empty(), partitioned.last("any_type", 29, 62));
+    assertEquals(OptionalLong.empty(), partitioned.first("missing_type", 0, 99));
+  }
+
+  @Test
+  public void histogramShouldCountTheEventsOfEachBucket() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 1000; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    long[] histogram = partitioned.histogram("any_type", 100, 999, 9);
+
+    assertEquals(9, histogram.length);
+    for (long bucket : histogram) {
+      assertEquals(100, bucket);
+    }
+  }
+
+  @Test
+  public void histogramShouldLeaveZeroInTheBucketsAfterTheEndTime() {
+    for (int i = 0; i < 10; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    // 11 timestamps in 4 buckets of width 3: [0, 2] [3, 5] [6, 8] [9, 10]
+    assertEquals("[3, 3, 3, 1]", Arrays.toString(sut.histogram("any_type", 0, 10, 4)));
+    assertEquals("[1, 1, 0]", Arrays.toString(sut.histogram("any_type", 8, 9, 3)));
+    assertEquals("[0, 0]", Arrays.toString(sut.histogram("missing_type", 0, 9, 2)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void histogramShouldThrowsIfBucketsIsNotPositive() {
+    sut.histogram("any_type", 0, 10, 0);
+  }
+
+  @Test
+  public void queryAllShouldMergeTheTypesOrderedByTimestamp() {
+    for (int i = 0; i < 30; i++) {
+      sut.insert(new Event("type_" + (i % 3), i));
+    }
+
+    EventIterator iterator =
+        sut.queryAll(Arrays.asList("type_2", "type_0", "missing_type", "type_0"), 5, 25);
+    for (int i = 5; i <= 25; i++) {
+      if (i % 3 != 1) {
+        assertEquals(true, iterator.moveNext());
+        assertEquals(i, iterator.current().timestamp());
+      }
+    }
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queryAllShouldThrowsIfATypeIsNotProvided() {
+    sut.queryAll(Arrays.asList("type_1", null), 0, 10);
+  }
+
+  @Test
+  public void queryPrefixShouldMergeTheTypesOfThePrefix() {
+    sut.insert(new Event("rig42.pump.pressure", 3l));
+    sut.insert(new Event("rig42.bit.depth", 1l));
+    sut.insert(new Event("rig43.pump.pressure", 2l));
+    sut.insert(new Event("rig42.pump.rate", 2l));
+
+    EventIterator iterator = sut.queryPrefix("rig42.", 0, 10);
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals("rig42.bit.depth", iterator.current().type());
+    assertEquals(true, iterator.moveNext());
+    assertEquals("rig42.pump.rate", iterator.current().type());
+    assertEquals(true, iterator.moveNext());
+    assertEquals("rig42.pump.pressure", iterator.current().type());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void queryGlobShouldMergeTheTypesMatched() {
+    sut.insert(new Event("rig42.pump.pressure", 3l));
+    sut.insert(new Event("rig42.pump.rate", 2l));
+    sut.insert(new Event("rig43.pump.pressure", 1l));
+
+    EventIterator iterator = sut.queryGlob("rig*.pressure", 0, 10);
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals("rig43.pump.pressure", iterator.current().type());
+    assertEquals(true, iterator.moveNext());
+    assertEquals("rig42.pump.pressure", iterator.current().type());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void removeAllWithPrefixShouldRemoveOnlyTheTypesOfThePrefix() {
+    sut.insert(new Event("rig42.pump.pressure", 3l));
+    sut.insert(new Event("rig42.pump.rate", 2l));
+    sut.insert(new Event("rig420.pump.rate", 2l));
+
+    sut.removeAllWithPrefix("rig42.");
+
+    assertEquals(Arrays.asList("rig420.pump.rate"),
+        Arrays.asList(sut.typesWithPrefix("").toArray()));
+    assertEquals(false, sut.query("rig42.pump.rate", 0, 10).moveNext());
+    assertEquals(true, sut.query("rig420.pump.rate", 0, 10).moveNext());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queryPrefixShouldThrowsIfPrefixIsNotProvided() {
+    sut.queryPrefix(null, 0, 10);
+  }
+
+  @Test
+  public void scanShouldCollectTheWindowInTimestampOrder() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 999; i >= 0; i--) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    List<Event> events = partitioned.scan("any_type", 15, 984, Collectors.toList());
+
+    assertEquals(970, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEquals(15 + i, events.get(i).timestamp());
+    }
+  }
+
+  @Test
+  public void scanShouldSplitTheBigPartitionsInTime() {
+    EventStoreMemory store = new EventStoreMemory();
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      batch.add(new Event("any_type", i));
+    }
+    store.insertAll(batch);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<Long> timestamps = store.scan("any_type", 10, 49_989,
+          Collectors.mapping(Event::timestamp, Collectors.toList()), pool);
+
+      assertEquals(49_980, timestamps.size());
+      for (int i = 0; i < timestamps.size(); i++) {
+        assertEquals(Long.valueOf(10 + i), timestamps.get(i));
+      }
+      assertEquals(Long.valueOf(0),
+          store.scan("missing_type", 0, 10, Collectors.counting(), pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void scanAndParallelStreamShouldSplitThePartitionThatReachesTheLastTimestamp() {
+    // the partition of the default width that holds these Event goes past Long.MAX_VALUE
+    EventStoreMemory store = new EventStoreMemory();
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      batch.add(new Event("any_type", Long.MAX_VALUE - 50_000 + i));
+    }
+    store.insertAll(batch);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<Long> scanned = store.scan("any_type", 0, Long.MAX_VALUE,
+          Collectors.mapping(Event::timestamp, Collectors.toList()), pool);
+      List<Long> streamed = store.stream("any_type", 0, Long.MAX_VALUE)
+          .parallel()
+          .map(Event::timestamp)
+          .collect(Collectors.toList());
+
+      assertEquals(50_000, scanned.size());
+      assertEquals(scanned, streamed);
+      for (int i = 0; i < scanned.size(); i++) {
+        assertEquals(Long.valueOf(Long.MAX_VALUE - 50_000 + i), scanned.get(i));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void streamShouldGiveTheWindowInTimestampOrder() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 999; i >= 0; i--) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    List<Long> timestamps = partitioned.stream("any_type", 15, 984)
+        .map(Event::timestamp)
+        .collect(Collectors.toList());
+
+    assertEquals(970, timestamps.size());
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(Long.valueOf(15 + i), timestamps.get(i));
+    }
+    assertEquals(0, partitioned.stream("missing_type", 0, 10).count());
+  }
+
+  @Test
+  public void parallelStreamShouldKeepTheOrderOfTheBigPartitions() {
+    EventStoreMemory store = new EventStoreMemory();
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      batch.add(new Event("any_type", i));
+    }
+    store.insertAll(batch);
+
+    assertEquals(true, store.stream("any_type", 0, 49_999).spliterator().trySplit() != null);
+
+    List<Long> timestamps = store.stream("any_type", 10, 49_989)
+        .parallel()
+        .map(Event::timestamp)
+        .collect(Collectors.toList());
+
+    assertEquals(49_980, timestamps.size());
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(Long.valueOf(10 + i), timestamps.get(i));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void streamShouldThrowsIfEndIsBeforeStart() {
+    sut.stream("any_type", 10, 5);
+  }
+
+  @Test
+  public void queryConfinedShouldGiveTheEventOfQueryAndRemoveThem() throws Exception {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    List<Long> timestamps = new ArrayList<>();
+    try (EventIterator iterator = partitioned.queryConfined("any_type", 5, 94)) {
+      while (iterator.moveNext()) {
+        timestamps.add(iterator.current().timestamp());
+        if (iterator.current().timestamp() % 2 == 0) {
+          iterator.remove();
+          iterator.remove();
+        }
+      }
+    }
+
+    assertEquals(90, timestamps.size());
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(Long.valueOf(5 + i), timestamps.get(i));
+    }
+    assertEquals(55, partitioned.count("any_type", 0, 99));
+    assertEquals(false, partitioned.queryConfined("missing_type", 0, 10).moveNext());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void queryConfinedShouldThrowsIfMoveNextWasNeverCalled() {
+    sut.insert(new Event("any_type", 5l));
+    sut.queryConfined("any_type", 0, 10).current();
+  }
+
+  @Test
+  public void insertOfHandleShouldShareTheTypeOfTheHandle() {
+    TypeHandle handle = sut.handle("Type_" + 1);
+    sut.insert(handle, 10l);
+    sut.insert(handle, 20l);
+
+    assertSame(handle, sut.handle("Type_1"));
+    EventIterator iterator = sut.query("Type_1", 0, 100);
+    assertEquals(true, iterator.moveNext());
+    assertSame(handle.type(), iterator.current().type());
+    assertEquals(true, iterator.moveNext());
+    assertSame(handle.type(), iterator.current().type());
+    assertEquals(20l, iterator.current().timestamp());
+  }
+
+  @Test
+  public void handleShouldStayValidAfterRemoveAll() {
+    TypeHandle first = sut.handle("type_1");
+    TypeHandle second = sut.handle("type_2");
+    sut.insert(first, 10l);
+    sut.removeAll("type_1");
+    sut.insert(first, 30l);
+
+    assertEquals(0, first.id());
+    assertEquals(1, second.id());
+    assertEquals(1, sut.count("type_1", 0, 100));
+    assertEquals(OptionalLong.of(30), sut.first("type_1", 0, 100));
+  }
+
+  @Test
+  public void insertOfHandleShouldGoToTheTimelineCreatedAfterRemoveAll() {
+    TypeHandle handle = sut.handle("type_1");
+    sut.insert(handle, 10l);
+    sut.removeAll("type_1");
+    sut.insert(new Event("type_1", 20l));
+    sut.insert(handle, 30l);
+
+    assertEquals(2, sut.count("type_1", 0, 100));
+    assertEquals(OptionalLong.of(20), sut.first("type_1", 0, 100));
+    assertEquals(OptionalLong.of(30), sut.last("type_1", 0, 100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void insertOfHandleShouldThrowsIfTheHandleIsOfAnotherStore() {
+    sut.insert(new EventStoreMemory().handle("type_1"), 10l);
+  }
+
+  @Test
+  public void defaultInsertOfHandleShouldOnlyAcceptTheHandlesOfItsStore() {
+    EventStoreMemory delegate = new EventStoreMemory();
+    EventStore store = new EventStore() {
+      @Override
+      public void insert(Event event) {
+        delegate.insert(event);
+      }
+
+      @Override
+      public TypeHandle handle(String type) {
+        return delegate.handle(type);
+      }
+
+      @Override
+      public void removeAll(String type) {
+        delegate.removeAll(type);
+      }
+
+      @Override
+      public EventIterator query(String type, long startTime, long endTime) {
+        return delegate.query(type, startTime, endTime);
+      }
+
+      @Override
+      public NavigableSet<String> typesWithPrefix(String prefix) {
+        return delegate.typesWithPrefix(prefix);
+      }
+    };
+    store.insert(store.handle("type_1"), 10l);
+
+    assertEquals(1, store.count("type_1", 0, 100));
+    try {
+      store.insert(new EventStoreMemory().handle("type_1"), 20l);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertEquals(1, store.count("type_1", 0, 100));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void handleShouldThrowsIfTypeIsBlank() {
+    sut.handle(" ");
+  }
+
+  @Test
+  public void metricsShouldCountTheInsertsOnlyWhileEnabled() {
+    EventStoreMemory store = new EventStoreMemory();
+    store.insert(new Event("type_1", 1l));
+    store.metrics().enable(EventStoreMetrics.Metric.INSERTS);
+    store.insert(new Event("type_1", 2l));
+    store.insertAll(Arrays.asList(new Event("type_2", 1l), new Event("type_2", 2l)));
+    store.insert(store.handle("type_2"), 3l);
+    store.metrics().disable(EventStoreMetrics.Metric.INSERTS);
+    store.insert(new Event("type_2", 4l));
+
+    assertEquals(4, store.metrics().getInserts());
+    assertEquals(Long.valueOf(2), store.metrics().getInsertsPerType().get("type_1"));
+    assertEquals(Long.valueOf(4), store.metrics().getInsertsPerType().get("type_2"));
+    assertEquals(6 * EventStoreMetrics.ESTIMATED_BYTES_PER_EVENT,
+        store.metrics().getEstimatedBytes());
+  }
+
+  @Test
+  public void metricsShouldRecordTheQueriesAtTheirEndOrClose() throws Exception {
+    EventStoreMemory store = new EventStoreMemory();
+    for (int i = 0; i < 100; i++) {
+      store.insert(new Event("any_type", i));
+    }
+    timestampsOfQuery(store.query("any_type", 0, 99));
+
+    store.metrics().enable(EventStoreMetrics.Metric.QUERY_LATENCY);
+    store.metrics().enable(EventStoreMetrics.Metric.RESULT_SIZE);
+    timestampsOfQuery(store.query("any_type", 0, 9));
+    timestampsOfQuery(store.queryConfined("any_type", 0, 49));
+    try (EventIterator iterator = store.query("any_type", 0, 99)) {
+      iterator.moveNext();
+      iterator.moveNext();
+    }
+    timestampsOfQuery(store.query("missing_type", 0, 99));
+
+    assertEquals(4, store.metrics().getQueries());
+    assertEquals(4, store.metrics().queryLatency().count());
+    assertEquals(50, store.metrics().getResultSizeMax());
+    assertEquals(2, store.metrics().resultSize().valueAtPercentile(50));
+    assertEquals(15.5, store.metrics().resultSize().mean(), 0.0);
+  }
+
+  @Test
+  public void metricsShouldBeSwitchedThroughJmx() throws Exception {
+    EventStoreMemory store = new EventStoreMemory();
+    ObjectName name = store.metrics().register("metrics-test");
+    try {
+      ManagementFactory.getPlatformMBeanServer().setAttribute(name,
+          new Attribute("InsertsEnabled", true));
+      store.insert(new Event("any_type", 1l));
+
+      assertEquals(true, store.metrics().isEnabled(EventStoreMetrics.Metric.INSERTS));
+      assertEquals(1l, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Inserts"));
+    } finally {
+      store.metrics().unregister();
+    }
+    assertEquals(false, ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+  }
+
+  @Test
+  public void subscriptionShouldReceiveTheEventInsertedInsideItsWindow() {
+    EventStoreMemory store = new EventStoreMemory();
+    store.insert(new Event("any_type", 15l));
+    Subscription subscription = store.subscribe("any_type", 10, 20, 16);
+    store.insert(new Event("any_type", 12l));
+    store.insert(new Event("other_type", 13l));
+    store.insert(new Event("any_type", 25l));
+    store.insertAll(Arrays.asList(new Event("any_type", 20l), new Event("any_type", 10l)));
+    store.insert(store.handle("any_type"), 11l);
+
+    List<Event> events = new ArrayList<>();
+    assertEquals(4, subscription.drainTo(events, 100));
+    assertEquals(12l, events.get(0).timestamp());
+    assertEquals(10l, events.get(1).timestamp());
+    assertEquals(20l, events.get(2).timestamp());
+    assertEquals(11l, events.get(3).timestamp());
+    assertEquals(null, subscription.poll());
+
+    subscription.close();
+    store.insert(new Event("any_type", 13l));
+    assertEquals(null, subscription.poll());
+  }
+
+  @Test
+  public void subscriptionShouldDropTheEventWhenItsBufferIsFull() {
+    EventStoreMemory store = new EventStoreMemory();
+    Subscription slow = store.subscribe("any_type", 0, Long.MAX_VALUE, 4);
+    Subscription fast = store.subscribe("any_type", 0, Long.MAX_VALUE, 16);
+    for (int i = 0; i < 10; i++) {
+      store.insert(new Event("any_type", i));
+    }
+
+    assertEquals(4, slow.pending());
+    assertEquals(6, slow.dropped());
+    assertEquals(10, fast.pending());
+    assertEquals(0, fast.dropped());
+    assertEquals(0l, slow.poll().timestamp());
+    assertEquals(10, store.count("any_type", 0, 100));
+  }
+
+  @Test
+  public void subscriptionShouldWakeTheConsumerWaitingForAnEvent() throws Exception {
+    EventStoreMemory store = new EventStoreMemory();
+    Subscription subscription = store.subscribe("any_type", 0, Long.MAX_VALUE, 16);
+    Thread producer = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        return;
+      }
+      store.insert(new Event("any_type", 42l));
+    });
+    producer.start();
+
+    Event event = subscription.poll(10, TimeUnit.SECONDS);
+    producer.join();
+
+    assertEquals(42l, event.timestamp());
+    assertEquals(null, subscription.poll(10, TimeUnit.MILLISECONDS));
+    subscription.close();
+    assertEquals(null, subscription.poll(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void subscriptionShouldSurviveRemoveAll() {
+    EventStoreMemory store = new EventStoreMemory();
+    Subscription subscription = store.subscribe("any_type", 0, 100, 16);
+    store.insert(new Event("any_type", 1l));
+    store.removeAll("any_type");
+    store.insert(new Event("any_type", 2l));
+
+    assertEquals(2, subscription.pending());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void subscribeShouldThrowsIfCapacityIsNotPositive() {
+    new EventStoreMemory().subscribe("any_type", 0, 10, 0);
+  }
+
+  @Test
+  public void shouldKeepTheAppendsAfterTheOpenPartitionWasDropped() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 25; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+
+    assertEquals(25, partitioned.dropPartitionsBefore("any_type", 30));
+    partitioned.insert(new Event("any_type", 26l));
+    partitioned.insert(new Event("any_type", 3l));
+    partitioned.insert(new Event("any_type", 27l));
+
+    assertEquals(3, partitioned.count("any_type", 0, 100));
+    assertEquals(OptionalLong.of(3), partitioned.first("any_type", 0, 100));
+  }
+
+  @Test
+  public void shouldUseThePartitionWidthOfTheType() {
+    EventStoreMemory store = new EventStoreMemory();
+    store.partitionWidth("hot_type", 10);
+    for (int i = 0; i < 100; i++) {
+      store.insert(new Event("hot_type", i));
+      store.insert(new Event("any_type", i));
+    }
+
+    assertEquals(50, store.dropPartitionsBefore("hot_type", 55));
+    assertEquals(0, store.dropPartitionsBefore("any_type", 55));
+    assertEquals(50, store.count("hot_type", 0, 100));
+    assertEquals(0, store.dropPartitionsBefore("missing_type", 55));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void partitionWidthShouldThrowsIfTheTypeHasPartitionsOfAnotherWidth() {
+    EventStoreMemory store = new EventStoreMemory();
+    store.insert(new Event("any_type", 1l));
+    store.partitionWidth("any_type", 10);
+  }
+
+  @Test
+  public void aRefusedPartitionWidthShouldNotApplyAfterRemoveAll() {
+    EventStoreMemory store = new EventStoreMemory();
+    store.insert(new Event("any_type", 1l));
+    try {
+      store.partitionWidth("any_type", 10);
+      fail();
+    } catch (IllegalStateException expected) {
+      // the type keeps the width of the store
+    }
+    store.removeAll("any_type");
+    for (int i = 0; i < 100; i++) {
+      store.insert(new Event("any_type", i));
+    }
+
+    assertEquals(0, store.dropPartitionsBefore("any_type", 55));
+    assertEquals(100, store.count("any_type", 0, 100));
+  }
+
+  @Test
+  public void compactBeforeShouldKeepTheAnswersOfEveryRead() {
+    EventStoreMemory partitioned = new EventStoreMemory(100);
+    for (int i = 0; i < 1000; i++) {
+      partitioned.insert(new Event("any_type", i / 2));
+    }
+    List<Long> expected = timestampsOfQuery(partitioned.query("any_type", 20, 470));
+
+    assertEquals(800, partitioned.compactBefore("any_type", 460));
+    assertEquals(0, partitioned.compactBefore("any_type", 460));
+    assertEquals(0, partitioned.compactBefore("missing_type", 460));
+
+    assertEquals(expected, timestampsOfQuery(partitioned.query("any_type", 20, 470)));
+    assertEquals(expected, timestampsOfQuery(partitioned.queryConfined("any_type", 20, 470)));
+    assertEquals(expected, partitioned.stream("any_type", 20, 470)
+        .map(Event::timestamp).collect(Collectors.toList()));
+    assertEquals(expected, partitioned.scan("any_type", 20, 470, Collectors.toList()).stream()
+        .map(Event::timestamp).collect(Collectors.toList()));
+    assertEquals(expected.size(), partitioned.count("any_type", 20, 470));
+    assertEquals(1000, partitioned.count("any_type", 0, 1000));
+    assertEquals(OptionalLong.of(20), partitioned.first("any_type", 20, 470));
+    assertEquals(OptionalLong.of(470), partitioned.last("any_type", 20, 470));
+    assertEquals("[200, 200, 200, 200, 200]",
+        Arrays.toString(partitioned.histogram("any_type", 0, 499, 5)));
+  }
+
+  @Test
+  public void shouldRemoveTheSealedEvents() throws Exception {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 100; i++) {
+      partitioned.insert(new Event("any_type", i));
+    }
+    partitioned.compactBefore(100);
+
+    EventIterator iterator = partitioned.query("any_type", 15, 15);
+    assertEquals(true, iterator.moveNext());
+    iterator.remove();
+    iterator.close();
+    assertEquals(5, partitioned.removeRange("any_type", 40, 44));
+    assertEquals(10, partitioned.removeRange("any_type", 0, 9));
+
+    assertEquals(84, partitioned.count("any_type", 0, 100));
+    assertEquals(OptionalLong.of(10), partitioned.first("any_type", 0, 100));
+    assertEquals(OptionalLong.of(14), partitioned.last("any_type", 0, 15));
+    assertEquals(Arrays.asList(14l, 16l), timestampsOfQuery(partitioned.query("any_type", 14, 16)));
+    assertEquals(Arrays.asList(39l, 45l), timestampsOfQuery(partitioned.query("any_type", 39, 45)));
+  }
+
+  @Test
+  public void lateEventsShouldBeMergedIntoTheSealedPartitionByTheNextCompaction() {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    for (int i = 0; i < 30; i += 2) {
+      partitioned.insert(new Event("any_type", i));
+    }
+    partitioned.compactBefore(30);
+    Event late = new Event("any_type", 5l);
+    partitioned.insert(late);
+
+    EventIterator iterator = partitioned.query("any_type", 4, 6);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(4, iterator.current().timestamp());
+    assertEquals(true, iterator.moveNext());
+    assertSame(late, iterator.current());
+
+    assertEquals(1, partitioned.compactBefore(30));
+    assertEquals(Arrays.asList(4l, 5l, 6l),
+        timestampsOfQuery(partitioned.query("any_type", 4, 6)));
+    assertEquals(16, partitioned.count("any_type", 0, 30));
+  }
 
+  @Test
+  public void compactionShouldReduceTheEstimatedBytesOfARegularStream() {
+    EventStoreMemory store = new EventStoreMemory(60_000);
+    long now = 1_600_000_000_000l;
+    for (int i = 0; i < 300_000; i++) {
+      store.insert(new Event("type_" + i % 10, now + i * 10 + i % 3));
+    }
+    long before = store.metrics().getEstimatedBytes();
+
+    store.compactBefore(Long.MAX_VALUE);
+
+    assertEquals(true, store.metrics().getEstimatedBytes() * 8 < before);
+    assertEquals(30_000, store.count("type_3", 0, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void eventCompactorShouldSealTheOldEventsInBackground() throws Exception {
+    EventStoreMemory partitioned = new EventStoreMemory(10);
+    long now = System.currentTimeMillis();
+    partitioned.insert(new Event("any_type", now - TimeUnit.HOURS.toMillis(2)));
+    partitioned.insert(new Event("any_type", now));
+
+    try (EventCompactor compactor =
+        new EventCompactor(partitioned, 1, 10, TimeUnit.MILLISECONDS)) {
+      while (compactor.sealedEvents() == 0) {
+        Thread.sleep(10);
+      }
+    }
+
+    assertEquals(Arrays.asList(now - TimeUnit.HOURS.toMillis(2), now),
+        timestampsOfQuery(partitioned.query("any_type", 0, Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void eventCompactorShouldKeepRunningAfterAPassFailed() throws Exception {
+    AtomicInteger passes = new AtomicInteger();
+    EventStoreMemory failing = new EventStoreMemory(10) {
+      @Override
+      public long compactBefore(long timestamp) {
+        if (passes.incrementAndGet() == 1)
+          throw new IllegalStateException("first pass");
+
+        return super.compactBefore(timestamp);
+      }
+    };
+    long now = System.currentTimeMillis();
+    failing.insert(new Event("any_type", now - TimeUnit.HOURS.toMillis(2)));
+    failing.insert(new Event("any_type", now));
+
+    try (EventCompactor compactor = new EventCompactor(failing, 1, 10, TimeUnit.MILLISECONDS)) {
+      while (compactor.sealedEvents() == 0) {
+        Thread.sleep(10);
+      }
+      assertEquals("first pass", compactor.lastFailure().getMessage());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void eventCompactorShouldThrowsIfThePeriodIsNotPositive() {
+    new EventCompactor(new EventStoreMemory(), 1, 0, TimeUnit.MILLISECONDS);
+  }
+
+  private static List<Long> timestampsOfQuery(EventIterator iterator) {
+    List<Long> timestamps = new ArrayList<>();
+    while (iterator.moveNext()) {
+      timestamps.add(iterator.current().timestamp());
+    }
+    return timestamps;
+  }
 }
@@ -9,6 +9,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 
 public class EventStoreMemoryThreadTest {
@@ -55,6 +56,48 @@ public class EventStoreMemoryThreadTest {
     }
   }
 
+  @Test
+  public void shouldNotLoseEventsInsertedInConcurrentIntoNewTypes() {
+    int numberOfTypes = 20;
+    int eventsPerTask = 100;
+    EventStore sut = new EventStoreMemory();
+    AtomicBoolean hasException = new AtomicBoolean(false);
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(8);
+    for (int task = 0; task < 8; task++) {
+      threadPool.execute(() -> {
+        try {
+          for (int i = 0; i < eventsPerTask; i++) {
+            for (int y = 0; y < numberOfTypes; y++) {
+              sut.insert(new Event("Type_" + y, i));
+            }
+          }
+        } catch (Exception e) {
+          hasException.set(true);
+          e.printStackTrace();
+        }
+      });
+    }
+
+    threadPool.shutdown();
+
+    try {
+      threadPool.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+
+    assertEquals(false, hasException.get());
+    for (int y = 0; y < numberOfTypes; y++) {
+      EventIterator iterator = sut.query("Type_" + y, 0, eventsPerTask);
+      int found = 0;
+      while (iterator.moveNext()) {
+        found++;
+      }
+      assertEquals(8 * eventsPerTask, found);
+    }
+  }
+
   @Test
   public void shouldBePossibleToRemoveInConcurrent() {
     EventStore sut = new EventStoreMemory();
@@ -247,4 +290,113 @@ public class EventStoreMemoryThreadTest {
     assertEquals(false, hasExceptionToRemove.get());
     assertEquals(false, hasExceptionToCallMoveNext.get());
   }
+
+  @Test
+  public void queriesShouldNeitherMissNorRepeatEventsWhileTheyAreSealed() throws Exception {
+    EventStoreMemory sut = new EventStoreMemory(1000);
+    for (int i = 0; i < 100_000; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+    AtomicBoolean hasException = new AtomicBoolean(false);
+
+    Thread compactor = new Thread(() -> {
+      try {
+        for (int i = 0; i < 100_000; i += 1000) {
+          sut.compactBefore(i);
+          // a late Event for a partition already sealed, sealed again by the next passes
+          sut.insert(new Event("any_type", i / 2));
+        }
+      } catch (Exception e) {
+        hasException.set(true);
+        e.printStackTrace();
+      }
+    });
+    compactor.start();
+
+    do {
+      List<Long> timestamps = new ArrayList<>();
+      try (EventIterator iterator = sut.query("any_type", 50_000, 99_999)) {
+        while (iterator.moveNext()) {
+          timestamps.add(iterator.current().timestamp());
+        }
+      }
+      assertEquals(50_000, timestamps.size());
+      for (int i = 0; i < timestamps.size(); i++) {
+        assertEquals(50_000 + i, (long) timestamps.get(i));
+      }
+    } while (compactor.isAlive());
+    compactor.join();
+
+    assertEquals(false, hasException.get());
+    assertEquals(100_100, sut.count("any_type", 0, 100_000));
+  }
+
+  @Test
+  public void countShouldNeitherMissNorRepeatEventsWhileTheyAreSealed() throws Exception {
+    EventStoreMemory sut = new EventStoreMemory(1000);
+    for (int i = 0; i < 100_000; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+    AtomicBoolean hasException = new AtomicBoolean(false);
+
+    Thread compactor = new Thread(() -> {
+      try {
+        for (int i = 0; i < 100_000; i += 1000) {
+          sut.compactBefore(i);
+        }
+      } catch (Exception e) {
+        hasException.set(true);
+        e.printStackTrace();
+      }
+    });
+    compactor.start();
+
+    do {
+      // the edges of the windows fall inside slots, so their keys are walked
+      assertEquals(49_800, sut.count("any_type", 50_100, 99_899));
+      assertEquals(99_763, sut.count("any_type", 37, 99_799));
+      assertEquals(1, sut.count("any_type", 12_345, 12_345));
+    } while (compactor.isAlive());
+    compactor.join();
+
+    assertEquals(false, hasException.get());
+    assertEquals(100_000, sut.count("any_type", 0, 100_000));
+  }
+
+  @Test
+  public void subscriptionShouldNeverLeaveTheConsumerParkedWithAnEventDelivered() throws Exception {
+    EventStoreMemory sut = new EventStoreMemory();
+    Subscription subscription = sut.subscribe("any_type", 0, Long.MAX_VALUE, 16);
+    int handoffs = 10_000;
+    AtomicLong consumed = new AtomicLong();
+    AtomicLong slowest = new AtomicLong();
+
+    Thread consumer = new Thread(() -> {
+      try {
+        for (int i = 0; i < handoffs; i++) {
+          long start = System.nanoTime();
+          if (subscription.poll(5, TimeUnit.SECONDS) == null) {
+            return;
+          }
+          slowest.accumulateAndGet(System.nanoTime() - start, Math::max);
+          consumed.incrementAndGet();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    consumer.start();
+
+    // a single Event at a time, each one delivered while the consumer may be about to park
+    for (int i = 0; i < handoffs && consumer.isAlive(); i++) {
+      sut.insert(new Event("any_type", i));
+      while (consumed.get() <= i && consumer.isAlive()) {
+        Thread.yield();
+      }
+    }
+    consumer.join();
+
+    assertEquals(handoffs, consumed.get());
+    assertEquals(true, slowest.get() < TimeUnit.SECONDS.toNanos(2));
+  }
 }
@@ -0,0 +1,131 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventStoreOffHeapTest {
+
+  private EventStoreOffHeap sut = null;
+
+  @Before
+  public void init() {
+    sut = new EventStoreOffHeap();
+  }
+
+  @After
+  public void release() {
+    sut.close();
+  }
+
+  @Test
+  public void shouldAddEventIntoStore() {
+    Event event = new Event("any_type", 5l);
+    sut.insert(event);
+
+    EventIterator iterator = sut.query("any_type", 5, 5);
+
+    assertEquals(true, iterator.moveNext());
+    assertEquals(event, iterator.current());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void eventsOfTheSameTypeShouldShareTheTypeString() {
+    sut.insert(new Event(new String("any_type"), 5l));
+    sut.insert(new Event(new String("any_type"), 6l));
+    String otherInstance = new String("any_type");
+
+    EventIterator iterator = sut.query(otherInstance, 0, 10);
+    iterator.moveNext();
+    String firstType = iterator.current().type();
+    iterator.moveNext();
+
+    assertNotSame(otherInstance, firstType);
+    assertEquals(true, firstType == iterator.current().type());
+  }
+
+  @Test
+  public void shouldKeepTheTimestampsOffHeap() {
+    for (long i = 0; i < 3 * TimestampChunk.CAPACITY; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    assertEquals(3 * DirectTimestampChunk.BYTES, sut.offHeapBytes());
+  }
+
+  @Test
+  public void removeAllShouldFreeTheMemoryOfTheType() {
+    for (long i = 0; i < 2 * TimestampChunk.CAPACITY; i++) {
+      sut.insert(new Event("type_1", i));
+    }
+    sut.insert(new Event("type_2", 5l));
+
+    sut.removeAll("type_1");
+
+    assertEquals(DirectTimestampChunk.BYTES, sut.offHeapBytes());
+    assertEquals(false, sut.query("type_1", 0, Long.MAX_VALUE).moveNext());
+    assertEquals(true, sut.query("type_2", 0, 10).moveNext());
+  }
+
+  @Test
+  public void openIteratorShouldReachItsEndWhenTheTypeIsRemoved() {
+    for (long i = 0; i < 10; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+    EventIterator iterator = sut.query("any_type", 0, 10);
+    assertEquals(true, iterator.moveNext());
+
+    sut.removeAll("any_type");
+
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void iteratorRemoveShouldDeleteTheEventFromTheStore() {
+    sut.insert(new Event("any_type", 5l));
+    sut.insert(new Event("any_type", 6l));
+
+    EventIterator iterator = sut.query("any_type", 0, 10);
+    iterator.moveNext();
+    iterator.remove();
+
+    iterator = sut.query("any_type", 0, 10);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(6, iterator.current().timestamp());
+    assertEquals(false, iterator.moveNext());
+  }
+
+  @Test
+  public void closeShouldFreeAllTheMemory() {
+    sut.insert(new Event("type_1", 5l));
+    sut.insert(new Event("type_2", 5l));
+
+    sut.close();
+
+    assertEquals(0, sut.offHeapBytes());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldThrowsIfTheStoreIsUsedAfterClose() {
+    sut.close();
+
+    sut.insert(new Event("any_type", 5l));
+  }
+
+  @Test
+  public void removeRangeShouldFreeTheChunksInsideTheRange() {
+    for (long i = 0; i < 4 * TimestampChunk.CAPACITY; i++) {
+      sut.insert(new Event("any_type", i));
+    }
+
+    sut.removeRange("any_type", 0, 3 * TimestampChunk.CAPACITY - 1);
+
+    assertEquals(DirectTimestampChunk.BYTES, sut.offHeapBytes());
+    EventIterator iterator = sut.query("any_type", 0, Long.MAX_VALUE);
+    assertEquals(true, iterator.moveNext());
+    assertEquals(3 * TimestampChunk.CAPACITY, iterator.current().timestamp());
+  }
+}
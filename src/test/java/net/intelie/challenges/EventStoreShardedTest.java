@@ -0,0 +1,115 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventStoreShardedTest {
+
+  private EventStoreSharded sut = null;
+
+  @Before
+  public void init() {
+    sut = new EventStoreSharded(4, EventStoreMemory::new,
+        Collections.singletonMap("hot_type", 10l));
+  }
+
+  private List<Long> timestampsOf(EventIterator iterator) {
+    List<Long> timestamps = new ArrayList<>();
+    while (iterator.moveNext()) {
+      timestamps.add(iterator.current().timestamp());
+    }
+    return timestamps;
+  }
+
+  @Test
+  public void shouldKeepEachTypeInASingleShard() {
+    for (int t = 0; t < 20; t++) {
+      sut.insert(new Event("type_" + t, t));
+    }
+
+    for (int t = 0; t < 20; t++) {
+      int shardsWithType = 0;
+      for (int i = 0; i < sut.shardCount(); i++) {
+        if (sut.shard(i).count("type_" + t, 0, 100) > 0) {
+          shardsWithType++;
+        }
+      }
+      assertEquals(1, shardsWithType);
+      assertEquals(Arrays.asList((long) t), timestampsOf(sut.query("type_" + t, 0, 100)));
+    }
+    assertEquals(20, sut.typesWithPrefix("type_").size());
+  }
+
+  @Test
+  public void typesWithPrefixShouldBeAReadOnlySnapshotOfTheShards() {
+    sut.insert(new Event("type_b", 1l));
+    sut.insert(new Event("type_a", 2l));
+    NavigableSet<String> types = sut.typesWithPrefix("type_");
+    sut.insert(new Event("type_c", 3l));
+
+    assertEquals(Arrays.asList("type_a", "type_b"), new ArrayList<>(types));
+    assertEquals(3, sut.typesWithPrefix("type_").size());
+    try {
+      types.add("type_d");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertEquals(2, types.size());
+    }
+  }
+
+  @Test
+  public void shouldSpreadTheSlicesOfAHotTypeAndMergeThemInOrder() {
+    List<Event> batch = new ArrayList<>();
+    for (long i = 99; i >= 0; i--) {
+      batch.add(new Event("hot_type", i));
+    }
+    sut.insertAll(batch);
+
+    for (int i = 0; i < sut.shardCount(); i++) {
+      assertEquals(true, sut.shard(i).count("hot_type", 0, 100) > 0);
+    }
+    List<Long> timestamps = timestampsOf(sut.query("hot_type", 5, 94));
+    assertEquals(90, timestamps.size());
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(Long.valueOf(5 + i), timestamps.get(i));
+    }
+    assertEquals(Arrays.asList(12l, 13l), timestampsOf(sut.queryConfined("hot_type", 12, 13)));
+    assertEquals(Arrays.asList(19l, 20l), timestampsOf(sut.query("hot_type", 19, 20)));
+    assertEquals(90, sut.count("hot_type", 5, 94));
+    assertEquals(OptionalLong.of(5), sut.first("hot_type", 5, 94));
+    assertEquals(OptionalLong.of(94), sut.last("hot_type", 5, 94));
+    assertEquals(Long.valueOf(90), sut.stream("hot_type", 5, 94).collect(Collectors.counting()));
+    assertEquals(10, sut.histogram("hot_type", 0, 99, 10)[3]);
+  }
+
+  @Test
+  public void removeShouldReachEveryShardOfAHotType() {
+    for (long i = 0; i < 100; i++) {
+      sut.insert(sut.handle("hot_type"), i);
+    }
+
+    assertEquals(20, sut.removeRange("hot_type", 40, 59));
+    assertEquals(80, sut.count("hot_type", 0, Long.MAX_VALUE));
+    sut.removeAll("hot_type");
+    assertEquals(0, sut.count("hot_type", 0, Long.MAX_VALUE));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfAHotTypeHasNoSlice() {
+    new EventStoreSharded(2, EventStoreMemory::new, Collections.singletonMap("hot_type", 0l));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfEventIsNotProvided() {
+    sut.insert(null);
+  }
+}
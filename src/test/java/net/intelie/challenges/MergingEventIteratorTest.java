@@ -0,0 +1,81 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class MergingEventIteratorTest {
+
+  private EventIterator sut;
+
+  private EventIterator iteratorOf(String type, long... timestamps) {
+    List<Event> events = new ArrayList<>();
+    for (long timestamp : timestamps) {
+      events.add(new Event(type, timestamp));
+    }
+    return new EventIteratorMemory(events);
+  }
+
+  @Test
+  public void moveNextShouldReturnFalseIfNoSourceIsProvided() {
+    sut = new MergingEventIterator(Collections.<EventIterator>emptyList());
+
+    assertEquals(false, sut.moveNext());
+  }
+
+  @Test
+  public void shouldMergeTheSourcesOrderedByTimestamp() {
+    sut = new MergingEventIterator(Arrays.asList(iteratorOf("type_1", 1, 4, 7),
+        iteratorOf("type_2"), iteratorOf("type_3", 2, 3, 8, 9), iteratorOf("type_4", 5)));
+
+    for (long timestamp = 1; timestamp <= 9; timestamp++) {
+      if (timestamp != 6) {
+        assertEquals(true, sut.moveNext());
+        assertEquals(timestamp, sut.current().timestamp());
+      }
+    }
+    assertEquals(false, sut.moveNext());
+  }
+
+  @Test
+  public void eventsOfTheSameTimestampShouldComeInTheOrderOfTheSources() {
+    sut = new MergingEventIterator(Arrays.asList(iteratorOf("type_1", 5, 6),
+        iteratorOf("type_2", 5)));
+
+    assertEquals(true, sut.moveNext());
+    assertEquals("type_1", sut.current().type());
+    assertEquals(true, sut.moveNext());
+    assertEquals("type_2", sut.current().type());
+    assertEquals(true, sut.moveNext());
+    assertEquals(6, sut.current().timestamp());
+  }
+
+  @Test
+  public void removeShouldRemoveFromTheSourceOfTheCurrentEvent() {
+    List<Event> first = new ArrayList<>(Arrays.asList(new Event("type_1", 1l)));
+    List<Event> second = new ArrayList<>(Arrays.asList(new Event("type_2", 2l)));
+    sut = new MergingEventIterator(Arrays.asList(new EventIteratorMemory(first),
+        new EventIteratorMemory(second)));
+
+    sut.moveNext();
+    sut.moveNext();
+    Event removed = sut.current();
+    sut.remove();
+
+    assertSame(removed, sut.current());
+    assertEquals(1, first.size());
+    assertEquals(0, second.size());
+    assertEquals(false, sut.moveNext());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void currentShouldThrowsIfMoveNextIsNotCall() {
+    sut = new MergingEventIterator(Arrays.asList(iteratorOf("type_1", 1)));
+
+    sut.current();
+  }
+}
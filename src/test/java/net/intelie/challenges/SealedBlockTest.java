@@ -0,0 +1,94 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import java.util.OptionalLong;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SealedBlockTest {
+
+  private static final int SIZE = 1000;
+
+  private long[] timestamps = null;
+  private long[] sequences = null;
+  private SealedBlock sut = null;
+
+  @Before
+  public void init() {
+    // a stream at an irregular rate, with repeated timestamps, a big gap and sequences out of order
+    Random random = new Random(42);
+    timestamps = new long[SIZE];
+    sequences = new long[SIZE];
+    long timestamp = 1_000;
+    for (int i = 0; i < SIZE; i++) {
+      timestamp += i == SIZE / 2 ? 1L << 40 : random.nextInt(3);
+      timestamps[i] = timestamp;
+      sequences[i] = i % 7 == 0 ? 5_000_000 - i : i;
+    }
+    sut = SealedBlock.of("any_type", timestamps, sequences, SIZE);
+  }
+
+  @Test
+  public void shouldDecodeTheKeysInOrder() {
+    SealedBlock.Cursor cursor = sut.cursor(0, Long.MIN_VALUE);
+    for (int i = 0; i < SIZE; i++) {
+      assertEquals(true, cursor.next());
+      assertEquals(i, cursor.index());
+      assertEquals(timestamps[i], cursor.timestamp());
+      assertEquals(sequences[i], cursor.sequence());
+    }
+    assertEquals(false, cursor.next());
+  }
+
+  @Test
+  public void cursorShouldStartAtTheFirstKeyNotBelowTheOneAsked() {
+    int index = 3 * SealedBlock.CHUNK + 5;
+    SealedBlock.Cursor cursor = sut.cursor(timestamps[index], sequences[index]);
+
+    assertEquals(true, cursor.next());
+    assertEquals(timestamps[index], cursor.timestamp());
+    assertEquals(sequences[index], cursor.sequence());
+
+    cursor = sut.cursor(timestamps[SIZE - 1] + 1, Long.MIN_VALUE);
+    assertEquals(false, cursor.next());
+  }
+
+  @Test
+  public void shouldFindTheFirstAndLastInsideTheWindow() {
+    long startTime = timestamps[100];
+    long endTime = timestamps[SIZE / 2 + 10];
+
+    assertEquals(OptionalLong.of(startTime), sut.first(startTime, endTime));
+    assertEquals(OptionalLong.of(endTime), sut.last(startTime, endTime));
+    assertEquals(OptionalLong.empty(), sut.first(0, timestamps[0] - 1));
+    assertEquals(OptionalLong.empty(), sut.last(timestamps[SIZE / 2 - 1] + 1, (1L << 40) - 1));
+  }
+
+  @Test
+  public void removedKeysShouldBeSkippedByFirstAndLast() {
+    assertEquals(true, sut.remove(timestamps[0], sequences[0]));
+    assertEquals(false, sut.remove(timestamps[0], sequences[0]));
+    assertEquals(false, sut.remove(timestamps[0], sequences[0] + 1));
+
+    assertEquals(SIZE - 1, sut.live());
+    assertEquals(true, sut.first(0, Long.MAX_VALUE).getAsLong() >= timestamps[1]);
+
+    SealedBlock.Cursor cursor = sut.cursor(0, Long.MIN_VALUE);
+    assertEquals(true, cursor.next());
+    assertEquals(true, sut.isRemoved(cursor.index()));
+  }
+
+  @Test
+  public void aStreamAtAConstantRateShouldTakeAboutTwoBytesPerKey() {
+    long[] regular = new long[SIZE];
+    long[] consecutive = new long[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      regular[i] = 1_600_000_000_000l + 10 * i;
+      consecutive[i] = i;
+    }
+
+    SealedBlock block = SealedBlock.of("any_type", regular, consecutive, SIZE);
+    assertEquals(true, block.bytes() < 3 * SIZE);
+  }
+}
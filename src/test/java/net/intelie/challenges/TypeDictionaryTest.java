@@ -0,0 +1,50 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TypeDictionaryTest {
+
+  private TypeDictionary sut = null;
+
+  @Before
+  public void init() {
+    sut = new TypeDictionary();
+    for (String type : Arrays.asList("rig42.pump.pressure", "rig42.pump.rate", "rig42.bit.depth",
+        "rig420.pump.pressure", "rig43.pump.pressure", "rig42\uffff", "rig42\uffff.x")) {
+      sut.add(type);
+    }
+  }
+
+  @Test
+  public void withPrefixShouldReturnOnlyTheTypesOfThePrefixInOrder() {
+    assertEquals(Arrays.asList("rig42.bit.depth", "rig42.pump.pressure", "rig42.pump.rate"),
+        Arrays.asList(sut.withPrefix("rig42.").toArray()));
+    assertEquals(Arrays.asList("rig42\uffff", "rig42\uffff.x"),
+        Arrays.asList(sut.withPrefix("rig42\uffff").toArray()));
+    assertEquals(7, sut.withPrefix("").size());
+    assertEquals(Collections.emptySet(), sut.withPrefix("rig5"));
+  }
+
+  @Test
+  public void withPrefixShouldNotReturnARemovedType() {
+    sut.remove("rig42.pump.rate");
+
+    assertEquals(Arrays.asList("rig42.pump.pressure"),
+        Arrays.asList(sut.withPrefix("rig42.pump").toArray()));
+  }
+
+  @Test
+  public void matchingShouldApplyTheWildcards() {
+    assertEquals(Arrays.asList("rig42.pump.pressure", "rig43.pump.pressure"),
+        Arrays.asList(TypeDictionary.matching("rig4?.*.pressure", sut::withPrefix).toArray()));
+    assertEquals(Arrays.asList("rig42.bit.depth"),
+        Arrays.asList(TypeDictionary.matching("rig42.bit.depth", sut::withPrefix).toArray()));
+    assertEquals(Arrays.asList("rig42.pump.rate"),
+        Arrays.asList(TypeDictionary.matching("*.rate", sut::withPrefix).toArray()));
+    assertEquals(Collections.emptySet(), TypeDictionary.matching("rig42.p", sut::withPrefix));
+  }
+}
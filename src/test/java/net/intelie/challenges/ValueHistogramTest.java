@@ -0,0 +1,66 @@
+package net.intelie.challenges;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValueHistogramTest {
+
+  private ValueHistogram sut = null;
+
+  @Before
+  public void init() {
+    sut = new ValueHistogram();
+  }
+
+  @Test
+  public void shouldBeEmptyWhenNothingWasRecorded() {
+    assertEquals(0, sut.count());
+    assertEquals(0, sut.valueAtPercentile(99));
+    assertEquals(0.0, sut.mean(), 0.0);
+  }
+
+  @Test
+  public void shouldKeepTheSmallValuesExactly() {
+    for (long value = 0; value < 32; value++) {
+      sut.record(value);
+    }
+
+    assertEquals(32, sut.count());
+    assertEquals(15, sut.valueAtPercentile(50));
+    assertEquals(31, sut.valueAtPercentile(100));
+    assertEquals(15.5, sut.mean(), 0.0);
+  }
+
+  @Test
+  public void shouldKeepTheValuesWithinTheRelativeErrorOfABucket() {
+    for (long value = 1; value <= 1_000_000; value++) {
+      sut.record(value * 1000);
+    }
+
+    assertEquals(1_000_000, sut.count());
+    assertEquals(1_000_000_000l, sut.max());
+    long p50 = sut.valueAtPercentile(50);
+    long p99 = sut.valueAtPercentile(99);
+    assertEquals(true, p50 >= 500_000_000l && p50 <= 500_000_000l * 17 / 16);
+    assertEquals(true, p99 >= 990_000_000l && p99 <= 1_000_000_000l);
+  }
+
+  @Test
+  public void shouldCoverEveryNonNegativeLong() {
+    sut.record(Long.MAX_VALUE);
+
+    assertEquals(Long.MAX_VALUE, sut.valueAtPercentile(100));
+    assertEquals(Long.MAX_VALUE, ValueHistogram.highestOf(ValueHistogram.bucketOf(Long.MAX_VALUE)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfValueIsNegative() {
+    sut.record(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowsIfPercentileIsAbove100() {
+    sut.valueAtPercentile(100.1);
+  }
+}
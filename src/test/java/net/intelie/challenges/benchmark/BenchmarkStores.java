@@ -0,0 +1,66 @@
+package net.intelie.challenges.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.EventStoreColumnar;
+import net.intelie.challenges.EventStoreMapped;
+import net.intelie.challenges.EventStoreMemory;
+import net.intelie.challenges.EventStoreOffHeap;
+import net.intelie.challenges.EventStoreSharded;
+
+/**
+ * A store under benchmark, created from the name given in the {@code store} parameter, so every
+ * implementation runs on the same harness. The sharded store spreads the types over 4 memory
+ * stores. The files of the mapped store go to a temporary
+ * directory deleted by {@link #close()}.
+ */
+final class BenchmarkStores implements AutoCloseable {
+
+  private static final int SHARDS = 4;
+
+  private final EventStore store;
+  private final Path directory;
+
+  private BenchmarkStores(EventStore store, Path directory) {
+    this.store = store;
+    this.directory = directory;
+  }
+
+  static BenchmarkStores open(String name) throws IOException {
+    switch (name) {
+      case "memory":
+        return new BenchmarkStores(new EventStoreMemory(), null);
+      case "columnar":
+        return new BenchmarkStores(new EventStoreColumnar(), null);
+      case "offheap":
+        return new BenchmarkStores(new EventStoreOffHeap(), null);
+      case "sharded":
+        return new BenchmarkStores(new EventStoreSharded(SHARDS), null);
+      case "mapped":
+        Path directory = Files.createTempDirectory("eventstore-benchmark");
+        return new BenchmarkStores(new EventStoreMapped(directory), directory);
+      default:
+        throw new IllegalArgumentException("unknown store " + name);
+    }
+  }
+
+  EventStore store() {
+    return store;
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (store instanceof AutoCloseable) {
+      ((AutoCloseable) store).close();
+    }
+    if (directory != null) {
+      try (Stream<Path> files = Files.walk(directory)) {
+        files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The reads of an {@link EventStoreMemory} before and after {@link
+ * EventStoreMemory#compactBefore(long)}, on a stream of {@code events} Event spread over {@code
+ * types} types: one Event a millisecond with a jitter of a few milliseconds, as the Event of a
+ * real feed arrive. The setup prints the heap taken by the store after a full GC, with the data
+ * linked in the skip lists or sealed in blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventCompactionBenchmark {
+
+  private static final long START = 1_600_000_000_000L;
+
+  @Param({"false", "true"})
+  public boolean compacted;
+
+  @Param({"1", "100"})
+  public int types;
+
+  @Param({"1000000"})
+  public int events;
+
+  private EventStoreMemory sut;
+  private String[] typeNames;
+
+  @Setup(Level.Trial)
+  public void populate() {
+    long before = usedHeap();
+    sut = new EventStoreMemory();
+    typeNames = new String[types];
+    for (int i = 0; i < types; i++) {
+      typeNames[i] = "type_" + i;
+    }
+
+    Random random = new Random(42);
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < events; i++) {
+      batch.add(new Event(typeNames[random.nextInt(types)], START + i + random.nextInt(4)));
+      if (batch.size() == 10_000) {
+        sut.insertAll(batch);
+        batch.clear();
+      }
+    }
+    sut.insertAll(batch);
+    if (compacted) {
+      sut.compactBefore(Long.MAX_VALUE);
+    }
+    System.out.printf("%n# heap of the store: %d bytes (estimated %d)%n", usedHeap() - before,
+        sut.metrics().getEstimatedBytes());
+  }
+
+  @Benchmark
+  public long iterateAll(Blackhole blackhole) {
+    return drain(sut.query(randomType(), 0, Long.MAX_VALUE), blackhole);
+  }
+
+  @Benchmark
+  public long query(Blackhole blackhole) {
+    long startTime = START + ThreadLocalRandom.current().nextLong(events - events / 100);
+    return drain(sut.query(randomType(), startTime, startTime + events / 100 - 1), blackhole);
+  }
+
+  @Benchmark
+  public long count() {
+    long startTime = START + ThreadLocalRandom.current().nextLong(events - events / 100);
+    return sut.count(randomType(), startTime, startTime + events / 100 - 1);
+  }
+
+  private String randomType() {
+    return typeNames[ThreadLocalRandom.current().nextInt(types)];
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long drain(EventIterator iterator, Blackhole blackhole) {
+    long count = 0;
+    try (EventIterator events = iterator) {
+      while (events.moveNext()) {
+        blackhole.consume(events.current());
+        count++;
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,96 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIngestor;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 32 producers inserting into an {@link EventStoreMemory}, straight with insert or through an
+ * {@link EventIngestor} of {@code shards} appenders. The throughput mode gives the sustained rate
+ * of the producers, the sample mode the distribution of the time of one insert or publish, p99
+ * included. The ingestor is flushed, and the store emptied, after each iteration, so the time of
+ * the appenders that did not keep up lands on the measure through the full buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(32)
+public class EventIngestorBenchmark {
+
+  @Param({"direct", "ingestor"})
+  public String path;
+
+  @Param({"4"})
+  public int shards;
+
+  @Param({"100"})
+  public int types;
+
+  private EventStoreMemory store;
+  private EventIngestor ingestor;
+  private String[] typeNames;
+
+  @Setup(Level.Trial)
+  public void start() {
+    store = new EventStoreMemory();
+    typeNames = new String[types];
+    for (int i = 0; i < types; i++) {
+      typeNames[i] = "type_" + i;
+    }
+    if ("ingestor".equals(path)) {
+      ingestor = new EventIngestor(store, shards, 64 * 1024);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void empty() throws InterruptedException {
+    if (ingestor != null) {
+      ingestor.flush();
+    }
+    for (String type : typeNames) {
+      store.removeAll(type);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws InterruptedException {
+    if (ingestor != null) {
+      ingestor.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Producer {
+    long nextTimestamp;
+  }
+
+  @Benchmark
+  public void insert(Producer producer) {
+    Event event = new Event(typeNames[ThreadLocalRandom.current().nextInt(types)],
+        producer.nextTimestamp++);
+    if (ingestor == null) {
+      store.insert(event);
+    } else {
+      ingestor.publish(event);
+    }
+  }
+}
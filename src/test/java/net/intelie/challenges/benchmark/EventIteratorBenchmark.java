@@ -0,0 +1,86 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A large result set walked on one thread: the sum of the timestamps of every Event of a type,
+ * with the synchronized iterator of {@link EventStore#query} against the thread-confined one of
+ * {@link EventStore#queryConfined}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventIteratorBenchmark {
+
+  private static final String TYPE = "any_type";
+
+  @Param({"memory", "columnar", "offheap", "mapped"})
+  public String store;
+
+  @Param({"1000000"})
+  public int events;
+
+  private BenchmarkStores stores;
+  private EventStore sut;
+
+  @Setup(Level.Trial)
+  public void populate() throws Exception {
+    stores = BenchmarkStores.open(store);
+    sut = stores.store();
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < events; i++) {
+      batch.add(new Event(TYPE, i));
+      if (batch.size() == 10_000) {
+        sut.insertAll(batch);
+        batch.clear();
+      }
+    }
+    sut.insertAll(batch);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws Exception {
+    stores.close();
+  }
+
+  @Benchmark
+  public long query() throws Exception {
+    return sum(sut.query(TYPE, 0, Long.MAX_VALUE));
+  }
+
+  @Benchmark
+  public long queryConfined() throws Exception {
+    return sum(sut.queryConfined(TYPE, 0, Long.MAX_VALUE));
+  }
+
+  private static long sum(EventIterator iterator) throws Exception {
+    long sum = 0;
+    try (EventIterator events = iterator) {
+      while (events.moveNext()) {
+        sum += events.current().timestamp();
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,62 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deletes 50% of a window through {@link EventIterator#remove}. Each removal is a skip-list
+ * removal, so the whole pass should cost O(k log n) instead of the O(k * n) of shifting an array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventIteratorRemoveBenchmark {
+
+  private static final String TYPE = "benchmark_type";
+
+  @Param({"5000000"})
+  public int windowSize;
+
+  private EventStore store;
+
+  @Setup(Level.Iteration)
+  public void fill() {
+    store = new EventStoreMemory();
+    for (int i = 0; i < windowSize; i++) {
+      store.insert(new Event(TYPE, i));
+    }
+  }
+
+  @Benchmark
+  public int removeHalfOfTheWindow() throws Exception {
+    int removed = 0;
+    try (EventIterator iterator = store.query(TYPE, 0, windowSize - 1)) {
+      while (iterator.moveNext()) {
+        if ((iterator.current().timestamp() & 1) == 0) {
+          iterator.remove();
+          removed++;
+        }
+      }
+    }
+
+    return removed;
+  }
+}
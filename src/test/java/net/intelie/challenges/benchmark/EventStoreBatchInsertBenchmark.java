@@ -0,0 +1,80 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.EventStoreColumnar;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserting a batch event by event against {@link EventStore#insertAll}. The scores are per
+ * event, so both benchmarks are directly comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventStoreBatchInsertBenchmark {
+
+  private static final int BATCH_SIZE = 10_000;
+
+  @Param({"memory", "columnar"})
+  public String store;
+
+  @Param({"10"})
+  public int types;
+
+  private EventStore sut;
+  private String[] typeNames;
+  // each batch is newer than the previous one, as in an ingestion pipeline
+  private long nextTimestamp;
+
+  // a new store every iteration, so the stores do not grow for the whole run
+  @Setup(Level.Iteration)
+  public void createStore() {
+    sut = "memory".equals(store) ? new EventStoreMemory() : new EventStoreColumnar();
+    typeNames = new String[types];
+    for (int i = 0; i < types; i++) {
+      typeNames[i] = "type_" + i;
+    }
+  }
+
+  private List<Event> nextBatch() {
+    List<Event> batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.add(new Event(typeNames[i % types], nextTimestamp++));
+    }
+    return batch;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void insertOneByOne() {
+    for (Event event : nextBatch()) {
+      sut.insert(event);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void insertAll() {
+    sut.insertAll(nextBatch());
+  }
+}
@@ -0,0 +1,246 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.TypeHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Every operation of the {@link EventStore} interface, for every store, on the same data set:
+ * {@code events} Event spread over {@code types} types, the Event i has the timestamp i and the
+ * type i % types, so every type covers the whole time span.
+ *
+ * <p>The benchmarks without a group run on one thread by default, {@code -t} runs them on more.
+ * The {@code mixed} group is the read/write profile: one thread inserting, two querying and one
+ * removing through the iterator, all on the same store.
+ *
+ * <p>Run it with {@code mvn -P benchmark test -Dbenchmark.args="EventStoreBenchmark"}, the
+ * profile adds {@code -prof gc}. The mapped store maps at least one file per type, so 100000
+ * types need {@code vm.max_map_count} above that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventStoreBenchmark {
+
+  private static final int BATCH_SIZE = 10_000;
+
+  @Param({"memory", "sharded", "columnar", "offheap", "mapped"})
+  public String store;
+
+  @Param({"1", "100", "100000"})
+  public int types;
+
+  @Param({"1000000"})
+  public int events;
+
+  private BenchmarkStores stores;
+  private EventStore sut;
+  private String[] typeNames;
+  private TypeHandle[] typeHandles;
+
+  @Setup(Level.Trial)
+  public void populate() throws Exception {
+    stores = BenchmarkStores.open(store);
+    sut = stores.store();
+    typeNames = new String[types];
+    typeHandles = new TypeHandle[types];
+    for (int i = 0; i < types; i++) {
+      typeNames[i] = "type_" + i;
+      typeHandles[i] = sut.handle(typeNames[i]);
+    }
+
+    List<Event> batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < events; i++) {
+      batch.add(new Event(typeNames[i % types], i));
+      if (batch.size() == BATCH_SIZE) {
+        sut.insertAll(batch);
+        batch.clear();
+      }
+    }
+    sut.insertAll(batch);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws Exception {
+    stores.close();
+  }
+
+  /**
+   * Fraction of the time span covered by a query, each type holds about the same fraction of
+   * its own Event.
+   */
+  @State(Scope.Benchmark)
+  public static class Selectivity {
+    @Param({"0.0001", "0.01", "1"})
+    public double fraction;
+  }
+
+  @State(Scope.Thread)
+  public static class Appender {
+    // each thread appends after the populated span, as new Event arriving
+    long nextTimestamp;
+
+    @Setup(Level.Trial)
+    public void start(EventStoreBenchmark benchmark) {
+      nextTimestamp = benchmark.events;
+    }
+  }
+
+  /**
+   * The type removed by the next invocation of removeAll, filled again after it.
+   */
+  @State(Scope.Thread)
+  public static class Victim {
+    int index;
+
+    @Setup(Level.Iteration)
+    public void choose(EventStoreBenchmark benchmark) {
+      index = ThreadLocalRandom.current().nextInt(benchmark.types);
+    }
+
+    @TearDown(Level.Iteration)
+    public void refill(EventStoreBenchmark benchmark) {
+      List<Event> batch = new ArrayList<>();
+      for (long timestamp = index; timestamp < benchmark.events; timestamp += benchmark.types) {
+        batch.add(new Event(benchmark.typeNames[index], timestamp));
+      }
+      benchmark.sut.insertAll(batch);
+    }
+  }
+
+  @Benchmark
+  public void insert(Appender appender) {
+    sut.insert(new Event(randomType(), appender.nextTimestamp++));
+  }
+
+  /**
+   * The type built for each Event, as most producers do.
+   */
+  @Benchmark
+  public void insertFreshType(Appender appender) {
+    int index = ThreadLocalRandom.current().nextInt(types);
+    sut.insert(new Event("type_" + index, appender.nextTimestamp++));
+  }
+
+  @Benchmark
+  public void insertHandle(Appender appender) {
+    TypeHandle handle = typeHandles[ThreadLocalRandom.current().nextInt(types)];
+    sut.insert(handle, appender.nextTimestamp++);
+  }
+
+  @Benchmark
+  public long query(Selectivity selectivity, Blackhole blackhole) {
+    long length = Math.max(1, (long) (events * selectivity.fraction));
+    long startTime = ThreadLocalRandom.current().nextLong(events - length + 1);
+    return drain(sut.query(randomType(), startTime, startTime + length - 1), blackhole);
+  }
+
+  @Benchmark
+  public long count(Selectivity selectivity) {
+    long length = Math.max(1, (long) (events * selectivity.fraction));
+    long startTime = ThreadLocalRandom.current().nextLong(events - length + 1);
+    return sut.count(randomType(), startTime, startTime + length - 1);
+  }
+
+  @Benchmark
+  public long[] histogram() {
+    return sut.histogram(randomType(), 0, events - 1, 100);
+  }
+
+  @Benchmark
+  public long iterateAll(Blackhole blackhole) {
+    return drain(sut.query(randomType(), 0, Long.MAX_VALUE), blackhole);
+  }
+
+  /**
+   * Removes one Event through the iterator and inserts it back, so the store keeps its size
+   * along the run; compare with insert for the share of the insert.
+   */
+  @Benchmark
+  public void iteratorRemove() throws Exception {
+    long timestamp = ThreadLocalRandom.current().nextLong(events);
+    String type = typeNames[(int) (timestamp % types)];
+    try (EventIterator iterator = sut.query(type, timestamp, timestamp)) {
+      if (iterator.moveNext()) {
+        iterator.remove();
+      }
+    }
+    sut.insert(new Event(type, timestamp));
+  }
+
+  /**
+   * One shot per iteration, the type removed is filled again out of the measure.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 20)
+  @Measurement(iterations = 50)
+  public void removeAll(Victim victim) {
+    sut.removeAll(typeNames[victim.index]);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public void mixedInsert(Appender appender) {
+    insert(appender);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(2)
+  public long mixedQuery(Blackhole blackhole) {
+    long length = Math.max(1, events / 100);
+    long startTime = ThreadLocalRandom.current().nextLong(events - length + 1);
+    return drain(sut.query(randomType(), startTime, startTime + length - 1), blackhole);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public void mixedIteratorRemove() throws Exception {
+    iteratorRemove();
+  }
+
+  private String randomType() {
+    return typeNames[ThreadLocalRandom.current().nextInt(types)];
+  }
+
+  private static long drain(EventIterator iterator, Blackhole blackhole) {
+    long count = 0;
+    try (EventIterator events = iterator) {
+      while (events.moveNext()) {
+        blackhole.consume(events.current());
+        count++;
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,104 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Insert and query throughput of a shared store as the number of threads grows. Inserts into
+ * distinct types should scale with the cores; inserts into the same type only share the
+ * type's skip list. {@link #main} runs every benchmark from 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventStoreContentionBenchmark {
+
+  private static final String SHARED_TYPE = "shared_type";
+
+  private EventStore store;
+
+  // Events are dropped every iteration so the heap does not dominate the numbers.
+  @Setup(Level.Iteration)
+  public void createStore() {
+    store = new EventStoreMemory();
+    for (int i = 0; i < 10_000; i++) {
+      store.insert(new Event(SHARED_TYPE, i));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadType {
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    String type;
+    long timestamp;
+
+    @Setup
+    public void chooseType() {
+      type = "thread_type_" + ids.getAndIncrement();
+    }
+  }
+
+  @Benchmark
+  public void insertDistinctTypes(ThreadType thread) {
+    store.insert(new Event(thread.type, thread.timestamp++));
+  }
+
+  @Benchmark
+  public void insertSameType(ThreadType thread) {
+    store.insert(new Event(SHARED_TYPE, thread.timestamp++));
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(1)
+  public void writer(ThreadType thread) {
+    store.insert(new Event(SHARED_TYPE, thread.timestamp++));
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(3)
+  public void reader(Blackhole blackhole) throws Exception {
+    try (EventIterator iterator = store.query(SHARED_TYPE, 5_000, 5_100)) {
+      while (iterator.moveNext()) {
+        blackhole.consume(iterator.current());
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : new int[] {1, 2, 4, 8, 16, 32, 64}) {
+      Options options = new OptionsBuilder()
+          .include(EventStoreContentionBenchmark.class.getSimpleName() + ".insert")
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStoreMemory;
+import net.intelie.challenges.EventStoreMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cost of the metrics of {@link EventStoreMemory} on insert and on a query of 100 Event,
+ * with every metric switched off (the default) and on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventStoreMetricsBenchmark {
+
+  @Param({"false", "true"})
+  public boolean metrics;
+
+  @Param({"100"})
+  public int types;
+
+  @Param({"1000000"})
+  public int events;
+
+  private EventStoreMemory sut;
+  private String[] typeNames;
+
+  @Setup(Level.Trial)
+  public void populate() {
+    sut = new EventStoreMemory();
+    typeNames = new String[types];
+    for (int i = 0; i < types; i++) {
+      typeNames[i] = "type_" + i;
+    }
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < events; i++) {
+      batch.add(new Event(typeNames[i % types], i));
+    }
+    sut.insertAll(batch);
+
+    if (metrics) {
+      for (EventStoreMetrics.Metric metric : EventStoreMetrics.Metric.values()) {
+        sut.metrics().enable(metric);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Appender {
+    long nextTimestamp;
+
+    @Setup(Level.Trial)
+    public void start(EventStoreMetricsBenchmark benchmark) {
+      nextTimestamp = benchmark.events;
+    }
+  }
+
+  @Benchmark
+  public void insert(Appender appender) {
+    sut.insert(new Event(randomType(), appender.nextTimestamp++));
+  }
+
+  @Benchmark
+  public long query(Blackhole blackhole) throws Exception {
+    long length = 100L * types;
+    long startTime = ThreadLocalRandom.current().nextLong(events - length + 1);
+    long count = 0;
+    try (EventIterator iterator = sut.query(randomType(), startTime, startTime + length - 1)) {
+      while (iterator.moveNext()) {
+        blackhole.consume(iterator.current());
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private String randomType() {
+    return typeNames[ThreadLocalRandom.current().nextInt(types)];
+  }
+}
@@ -0,0 +1,65 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Latency of a narrow query while the queried type grows. With the time-ordered index the
+ * latency should stay flat (O(log n + k)) as eventsPerType grows.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="EventStoreQueryBenchmark"}. The 10M case
+ * needs a large heap, e.g. {@code -jvmArgs -Xmx8g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class EventStoreQueryBenchmark {
+
+  private static final String TYPE = "benchmark_type";
+
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int eventsPerType;
+
+  @Param({"100"})
+  public int windowSize;
+
+  private EventStore store;
+
+  @Setup
+  public void fill() {
+    store = new EventStoreMemory();
+    for (int i = 0; i < eventsPerType; i++) {
+      store.insert(new Event(TYPE, i));
+    }
+  }
+
+  @Benchmark
+  public void narrowQuery(Blackhole blackhole) throws Exception {
+    long start = ThreadLocalRandom.current().nextLong(Math.max(1, eventsPerType - windowSize));
+    try (EventIterator iterator = store.query(TYPE, start, start + windowSize - 1)) {
+      while (iterator.moveNext()) {
+        blackhole.consume(iterator.current());
+      }
+    }
+  }
+}
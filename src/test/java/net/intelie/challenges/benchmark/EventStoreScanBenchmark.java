@@ -0,0 +1,98 @@
+package net.intelie.challenges.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStoreMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A wide scan of one type: the sum of the timestamps of every Event, walking the iterator of
+ * query on one thread against {@link EventStoreMemory#scan} on a ForkJoinPool of
+ * {@code parallelism} threads. The speedup should follow the parallelism up to the number of
+ * cores of the machine. {@link EventStoreMemory#stream} does the same sum sequentially, without
+ * the lock of the iterator, and as a parallel stream run inside the same pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class EventStoreScanBenchmark {
+
+  private static final String TYPE = "any_type";
+
+  @Param({"10000000"})
+  public int events;
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  private EventStoreMemory store;
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void populate() {
+    store = new EventStoreMemory();
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < events; i++) {
+      batch.add(new Event(TYPE, i));
+      if (batch.size() == 10_000) {
+        store.insertAll(batch);
+        batch.clear();
+      }
+    }
+    store.insertAll(batch);
+    pool = new ForkJoinPool(parallelism);
+  }
+
+  @TearDown(Level.Trial)
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public long iterate() throws Exception {
+    long sum = 0;
+    try (EventIterator iterator = store.query(TYPE, 0, Long.MAX_VALUE)) {
+      while (iterator.moveNext()) {
+        sum += iterator.current().timestamp();
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long scan() {
+    return store.scan(TYPE, 0, Long.MAX_VALUE, Collectors.summingLong(Event::timestamp), pool);
+  }
+
+  @Benchmark
+  public long stream() {
+    return store.stream(TYPE, 0, Long.MAX_VALUE).mapToLong(Event::timestamp).sum();
+  }
+
+  @Benchmark
+  public long parallelStream() throws Exception {
+    // a parallel stream forks its tasks in the pool of the thread that runs it
+    return pool.submit(() ->
+        store.stream(TYPE, 0, Long.MAX_VALUE).parallel().mapToLong(Event::timestamp).sum()).get();
+  }
+}
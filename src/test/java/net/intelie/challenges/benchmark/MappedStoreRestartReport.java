@@ -0,0 +1,49 @@
+package net.intelie.challenges.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventIterator;
+import net.intelie.challenges.EventStoreMapped;
+
+/**
+ * Time to reopen an {@link EventStoreMapped}. The first run fills the directory, the next runs
+ * only reopen it, so the restart cost can be measured with a cold or warm page cache.
+ *
+ * <p>Arguments: {@code <directory> [events] [types]}, e.g. {@code /data/store 1000000000 10}.
+ */
+public class MappedStoreRestartReport {
+
+  public static void main(String[] args) throws Exception {
+    Path directory = Paths.get(args.length > 0 ? args[0] : "target/mapped-store");
+    long events = args.length > 1 ? Long.parseLong(args[1]) : 100_000_000L;
+    int types = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    if (!Files.exists(directory)) {
+      long start = System.nanoTime();
+      try (EventStoreMapped store = new EventStoreMapped(directory)) {
+        for (long i = 0; i < events; i++) {
+          store.insert(new Event("type_" + (i % types), i / types));
+        }
+      }
+      System.out.printf("filled %d events in %d ms%n", events,
+          (System.nanoTime() - start) / 1_000_000);
+    }
+
+    long start = System.nanoTime();
+    try (EventStoreMapped store = new EventStoreMapped(directory)) {
+      long openMillis = (System.nanoTime() - start) / 1_000_000;
+
+      start = System.nanoTime();
+      long found = 0;
+      try (EventIterator iterator = store.query("type_0", 1_000, 1_999)) {
+        while (iterator.moveNext()) {
+          found++;
+        }
+      }
+      System.out.printf("open: %d ms, first query: %d events in %d us%n", openMillis, found,
+          (System.nanoTime() - start) / 1_000);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package net.intelie.challenges.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import net.intelie.challenges.Event;
+import net.intelie.challenges.EventStore;
+import net.intelie.challenges.EventStoreColumnar;
+import net.intelie.challenges.EventStoreMemory;
+import net.intelie.challenges.EventStoreOffHeap;
+
+/**
+ * Bytes per event and GC pauses of a store holding many events. Heap figures are not a JMH
+ * metric, so this is a plain program: it fills the store, forces a collection and reports the
+ * retained heap divided by the number of events, plus the count, total and worst pause of the
+ * collections that happened meanwhile.
+ *
+ * <p>Arguments: {@code <memory|columnar|offheap> [events] [types]}, e.g. for the 100M case
+ * {@code java -Xmx32g -cp ... net.intelie.challenges.benchmark.StoreFootprintReport columnar
+ * 100000000 10}.
+ */
+public class StoreFootprintReport {
+
+  public static void main(String[] args) {
+    String storeName = args.length > 0 ? args[0] : "columnar";
+    long events = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000L;
+    int types = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    AtomicLong pauses = new AtomicLong();
+    AtomicLong totalPauseMillis = new AtomicLong();
+    AtomicLong worstPauseMillis = new AtomicLong();
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+            .equals(notification.getType())) {
+          return;
+        }
+        long duration = GarbageCollectionNotificationInfo
+            .from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+        pauses.incrementAndGet();
+        totalPauseMillis.addAndGet(duration);
+        worstPauseMillis.accumulateAndGet(duration, Math::max);
+      }, null, null);
+    }
+
+    String[] typeNames = new String[types];
+    for (int i = 0; i < types; i++) {
+      typeNames[i] = "type_" + i;
+    }
+
+    long heapBefore = usedHeapAfterCollection();
+    EventStore store = createStore(storeName);
+    long start = System.nanoTime();
+    for (long i = 0; i < events; i++) {
+      store.insert(new Event(typeNames[(int) (i % types)], i / types));
+    }
+    long fillMillis = (System.nanoTime() - start) / 1_000_000;
+    long heapAfter = usedHeapAfterCollection();
+
+    System.out.printf("store=%s events=%d types=%d%n", storeName, events, types);
+    System.out.printf("fill time: %d ms%n", fillMillis);
+    System.out.printf("retained heap: %d MB, %.1f bytes/event%n",
+        (heapAfter - heapBefore) / (1024 * 1024), (heapAfter - heapBefore) / (double) events);
+    if (store instanceof EventStoreOffHeap) {
+      System.out.printf("off-heap: %d MB%n",
+          ((EventStoreOffHeap) store).offHeapBytes() / (1024 * 1024));
+    }
+    System.out.printf("gc: %d collections, %d ms total, %d ms worst pause%n", pauses.get(),
+        totalPauseMillis.get(), worstPauseMillis.get());
+
+    // keeps the store reachable until the heap was measured
+    System.out.println(store.query(typeNames[0], 0, 0).moveNext() ? "" : "empty store");
+  }
+
+  private static EventStore createStore(String name) {
+    switch (name) {
+      case "memory":
+        return new EventStoreMemory();
+      case "offheap":
+        return new EventStoreOffHeap();
+      default:
+        return new EventStoreColumnar();
+    }
+  }
+
+  private static long usedHeapAfterCollection() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}